@@ -9,7 +9,7 @@ import java.util.*;
 
 // Default state behaviour.
 abstract class State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         System.err.println("move() method has to be overriden.");
         return null;
@@ -18,7 +18,7 @@ abstract class State {
 
 // Move made to orient oneself.
 class OrientingState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         // Diagonal bouncing.
         // Avoid enemies?
@@ -46,16 +46,12 @@ class OrientingState extends State {
 
 // Move made to go to the adjacent landmark.
 class GoingToLandmarkState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         for(int i = 0 ; i < 3; ++i) {
             for(int j = 0 ; j < 3 ; ++j) {
-                if (nearbyIds.get(i).get(j) == null) continue;
-
-                for (String ID : nearbyIds.get(i).get(j)) {
-                    if (ID.charAt(0) == 'L') {
-                        return new Point(i - 1, j - 1);
-                    }
+                if (nearbyIds.hasKind(i, j, CellObject.Kind.LANDMARK)) {
+                    return new Point(i - 1, j - 1);
                 }
             }
         }
@@ -69,14 +65,14 @@ class GoingToLandmarkState extends State {
 class ExploringState extends State {
     Random rand = new Random();
 
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
 
         rand = new Random(player.id);
         return getDiagonalMove(player, nearbyIds);
     }
 
-    private Point getDiagonalMove(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds) {        
+    private Point getDiagonalMove(Player player, Neighborhood nearbyIds) {        
 
         Point move = null;
 
@@ -113,7 +109,7 @@ class ExploringState extends State {
 
 // Go to center of your quadrant.
 class MovingTowardsCenterState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         return player.goToPosition(player.upperRight.x + player.n/4,
                 player.upperLeft.y + player.n/4, nearbyIds);
@@ -122,7 +118,7 @@ class MovingTowardsCenterState extends State {
 
 // Go to communicate.
 class GoingToCommunicateState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         // Check if the player is already in the center.
         if (player.x == player.n/2 && player.y == player.n/2) {
@@ -137,7 +133,7 @@ class GoingToCommunicateState extends State {
 
 // Go to the outpost assigned to you.
 class GoingBackToOutpostState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         int dx, dy;
         boolean oriented = player.x != -1;
@@ -149,10 +145,10 @@ class GoingBackToOutpostState extends State {
             dx = (player.assignedOutpost.x == 0)? -1 : 1;
             dy = (player.assignedOutpost.y == 0)? -1 : 1;
 
-            if (nearbyIds.get(0).get(1) == null || nearbyIds.get(2).get(1) == null) {
+            if (nearbyIds.isOffBoard(0, 1) || nearbyIds.isOffBoard(2, 1)) {
                 dx = 0;
             }
-            if (nearbyIds.get(1).get(0) == null || nearbyIds.get(1).get(2) == null) {
+            if (nearbyIds.isOffBoard(1, 0) || nearbyIds.isOffBoard(1, 2)) {
                 dy = 0;
             }
 
@@ -162,7 +158,7 @@ class GoingBackToOutpostState extends State {
 }
 
 class MovingToNearbyOutpostState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         int n = player.n;
         int outpostX = (player.x < n/2)? 0 : n+1;
@@ -173,7 +169,7 @@ class MovingToNearbyOutpostState extends State {
 
 // Reached the outpost. Time is almost up. Don't move.
 class DoneState extends State {
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         return new Point(0, 0);
     }
@@ -184,7 +180,7 @@ abstract class Event {
     // This method is required since attributes are not overriden in subclasses.
     public int getPriority() { return 0; }
 
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         System.err.println("isHappening() method has to be overriden.");
         return false;
@@ -196,7 +192,7 @@ class NoEvent extends Event {
     public int getPriority() { return 0; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         return true;
     }
@@ -207,15 +203,12 @@ class LandmarkSightedEvent extends Event {
     public int getPriority() { return 4; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         for(int i = 0 ; i < 3; ++i) {
             for(int j = 0 ; j < 3 ; ++j) {
-                if (nearbyIds.get(i).get(j) == null) continue;
-                for (String ID : nearbyIds.get(i).get(j)) {
-                    if (ID.charAt(0) == 'L') {
-                        return true;
-                    }
+                if (nearbyIds.hasKind(i, j, CellObject.Kind.LANDMARK)) {
+                    return true;
                 }
             }
         }
@@ -229,18 +222,18 @@ class OrientedEvent extends Event {
     public int getPriority() { return 6; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         if (player.x != -1) return true;
 
         // If we find a landmark or an outpost, we can orient ourselves. 
         for(CellObject obj : concurrentObjects) {
-            if (obj instanceof Landmark) {
+            if (obj.getKind() == CellObject.Kind.LANDMARK) {
                 player.x = ((Landmark) obj).getLocation().x;
                 player.y = ((Landmark) obj).getLocation().y;
                 return true;
             }
-            if (obj instanceof Outpost) {
+            if (obj.getKind() == CellObject.Kind.OUTPOST) {
                 player.x = ((Outpost) obj).getLocation().x;
                 player.y = ((Outpost) obj).getLocation().y;
                 return true;
@@ -248,18 +241,18 @@ class OrientedEvent extends Event {
         }
 
         // Record the location of edges. 
-        if (nearbyIds.get(0).get(0) == null) {
-            if (nearbyIds.get(0).get(2) == null) {
+        if (nearbyIds.isOffBoard(0, 0)) {
+            if (nearbyIds.isOffBoard(0, 2)) {
                 player.xEdgeFound = "top";
             }
-            if (nearbyIds.get(2).get(0) == null) {
+            if (nearbyIds.isOffBoard(2, 0)) {
                 player.yEdgeFound = "left";
             }
-        } else if (nearbyIds.get(2).get(2) == null) {
-            if (nearbyIds.get(2).get(0) == null) {
+        } else if (nearbyIds.isOffBoard(2, 2)) {
+            if (nearbyIds.isOffBoard(2, 0)) {
                 player.xEdgeFound = "bottom";
             }
-            if (nearbyIds.get(0).get(2) == null) {
+            if (nearbyIds.isOffBoard(0, 2)) {
                 player.yEdgeFound = "right";
             }
         }
@@ -271,8 +264,8 @@ class OrientedEvent extends Event {
 
         // If both edges have been seen, we know where we are.
         if (player.xEdgeFound != null && player.yEdgeFound != null) {
-            if (nearbyIds.get(1).get(0) == null || nearbyIds.get(1).get(2) == null) {
-                if (nearbyIds.get(1).get(0) == null) {
+            if (nearbyIds.isOffBoard(1, 0) || nearbyIds.isOffBoard(1, 2)) {
+                if (nearbyIds.isOffBoard(1, 0)) {
                     player.y = 0;
                 }
                 else {
@@ -287,7 +280,7 @@ class OrientedEvent extends Event {
                     player.x = (player.n + 1) - player.distanceFromEdge;
                 }
             } else {
-                if (nearbyIds.get(0).get(1) == null) {
+                if (nearbyIds.isOffBoard(0, 1)) {
                     player.x = 0;
                 }
                 else {
@@ -314,7 +307,7 @@ class NotOrientedEvent extends Event {
     public int getPriority() { return 1; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         return player.x == -1;
     }
@@ -325,7 +318,7 @@ class QuadrantReachedEvent extends Event {
     public int getPriority() { return 8; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public boolean isHappening(Player player, Neighborhood nearbyIds, List<CellObject> concurrentObjects) {
 
         return player.x != -1 && isWithinQuadrant(player);
     }
@@ -342,7 +335,7 @@ class CloseToOutpostEvent extends Event {
     public int getPriority() { return 10; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public boolean isHappening(Player player, Neighborhood nearbyIds, List<CellObject> concurrentObjects) {
         boolean enoughPlayersToReport = player.numScouts > 3;
         // If there are enough players to get to the outposts by the end of the game, ignore intermediate reporting.
         if (enoughPlayersToReport || player.turnsToNextReporting > 0) {
@@ -360,7 +353,7 @@ class CommunicateEvent extends Event {
     public int getPriority() { return 100; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         // Special case where there is only one scout. No communication required in this case.
         if (player.numScouts == 1) return false;
@@ -393,7 +386,7 @@ class EndOfMissionEvent extends Event {
     public int getPriority() { return 1000; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         if (player.moveToOutpost)
             return true;
@@ -424,12 +417,12 @@ class OutpostReachedEvent extends Event {
     public int getPriority() { return 10; }
 
     @Override
-    public boolean isHappening(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    public boolean isHappening(Player player, Neighborhood nearbyIds,
                                List<CellObject> concurrentObjects) {
         int outpostRange = Math.max(3, player.n / 20);
         player.turnsToNextReporting = outpostRange * 2 * 3; // Twice the outpost range by diagonal movement time.
         for(CellObject obj : concurrentObjects) {
-            if (obj instanceof Outpost) {
+            if (obj.getKind() == CellObject.Kind.OUTPOST) {
                 // The game is ending and the player has reached the outpost without knowing
                 // their location.
                 if (player.x == -1) {
@@ -438,13 +431,9 @@ class OutpostReachedEvent extends Event {
                     player.unravelData();
                 }
 
-                // Exchange information with the outpost.
-                for(Point safe : player.safeLocations) {
-                    ((Outpost) obj).addSafeLocation(safe);
-                }
-                for(Point unsafe : player.enemyLocations) {
-                    ((Outpost) obj).addEnemyLocation(unsafe);
-                }
+                // Exchange information with the outpost, enemies are reported last so they win over safe cells.
+                ((Outpost) obj).addSafeLocations(player.safeCells);
+                ((Outpost) obj).addEnemyLocations(player.enemyCells);
 
                 return true;
             }
@@ -549,13 +538,18 @@ class PlayerFSM {
         transitions.put(DoneState.class, doneTransitions);
     }
 
-    public Point move(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    // DoneState has no transitions, so once there the player never moves again.
+    public boolean isDone() {
+        return currentState == doneState;
+    }
+
+    public Point move(Player player, Neighborhood nearbyIds,
                       List<CellObject> concurrentObjects) {
         this.updateState(player, nearbyIds, concurrentObjects);
         return currentState.move(player, nearbyIds, concurrentObjects);
     }
 
-    private void updateState(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    private void updateState(Player player, Neighborhood nearbyIds,
                              List<CellObject> concurrentObjects) {
         Map<Class<? extends Event>, State> currentStateTransitions = transitions.get(currentState.getClass());
         Event highestPriorityEvent = getHighestPriorityEvent(player, nearbyIds, concurrentObjects, currentStateTransitions);
@@ -569,7 +563,7 @@ class PlayerFSM {
         }
     }
 
-    private Event getHighestPriorityEvent(Player player, ArrayList<ArrayList<ArrayList<String>>> nearbyIds,
+    private Event getHighestPriorityEvent(Player player, Neighborhood nearbyIds,
                                           List<CellObject> concurrentObjects,
                                           Map<Class<? extends Event>, State> currentStateTransitions) {
         Event highestPriorityEvent = new NoEvent();
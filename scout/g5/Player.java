@@ -37,6 +37,9 @@ public class Player extends scout.sim.Player {
     List<Point> safeLocations;
     List<Point> enemyLocations;
     List<Location> unknownLocations;
+    // The same safe and enemy knowledge as bitmaps, bit x * (n + 2) + y as taken by Outpost.
+    BitSet safeCells;
+    BitSet enemyCells;
 
     // Coordinate details.
     Point assignedOutpost;
@@ -75,6 +78,8 @@ public class Player extends scout.sim.Player {
     public void init(String id, int s, int n, int t, List<Point> landmarkLocations) {
         enemyLocations = new ArrayList<>();
         safeLocations = new ArrayList<>();
+        safeCells = new BitSet((n+2)*(n+2));
+        enemyCells = new BitSet((n+2)*(n+2));
 
         // We know that the limits are safe, so add that to the safe locations.
         for (int i = 0; i < n+2; ++i) {
@@ -82,6 +87,10 @@ public class Player extends scout.sim.Player {
             safeLocations.add(new Point(i,0));
             safeLocations.add(new Point(n+1,i));
             safeLocations.add(new Point(i,n+1));
+            safeCells.set(i);
+            safeCells.set(i*(n+2));
+            safeCells.set((n+1)*(n+2) + i);
+            safeCells.set(i*(n+2) + n+1);
         }
 
         unknownLocations = new ArrayList<>();
@@ -250,7 +259,7 @@ public class Player extends scout.sim.Player {
     }
 
     @Override
-    public Point move(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public Point move(Neighborhood nearbyIds, List<CellObject> concurrentObjects) {
         Point nextMove = fsm.move(this, nearbyIds, concurrentObjects);
 
         // The player thinks they are not oriented. However, the FSM determined the position.
@@ -267,14 +276,19 @@ public class Player extends scout.sim.Player {
         return nextMove;
     }
 
+    @Override
+    public Point move(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+        return move(Neighborhood.of(nearbyIds), concurrentObjects);
+    }
+
     // Communicate with other players.
     @Override
-    public void communicate(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public void communicate(Neighborhood nearbyIds, List<CellObject> concurrentObjects) {
         if (turnsToNextReporting > 0) --turnsToNextReporting;
         --remainingTurns;
 
         for (CellObject obj : concurrentObjects) {
-            if (obj instanceof Player) {
+            if (obj.getKind() == CellObject.Kind.SCOUT) {
                 if (((Player) obj).id != this.id) {
                     mergeData((Player)obj);
                 }
@@ -282,6 +296,17 @@ public class Player extends scout.sim.Player {
         }
     }
 
+    @Override
+    public void communicate(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+        communicate(Neighborhood.of(nearbyIds), concurrentObjects);
+    }
+
+    // The player stays at the outpost once the FSM reaches DoneState.
+    @Override
+    public boolean isDone() {
+        return fsm.isDone();
+    }
+
     @Override
     public void moveFinished() {
         if (x != -1) {
@@ -291,7 +316,7 @@ public class Player extends scout.sim.Player {
     }
 
     // Go to xFinal, yFinal.
-    public Point goToPosition(int xFinal, int yFinal, ArrayList<ArrayList<ArrayList<String>>> nearbyIds) {
+    public Point goToPosition(int xFinal, int yFinal, Neighborhood nearbyIds) {
         int moveX = 1;
         int moveY = 1;
 
@@ -351,7 +376,7 @@ public class Player extends scout.sim.Player {
 
     public boolean isLowerPlayerPresent(List<CellObject> concurrentObjects) {
         for (CellObject obj : concurrentObjects) {
-            if (obj instanceof Player) {
+            if (obj.getKind() == CellObject.Kind.SCOUT) {
                 int otherId = ((Player) obj).id;
                 if (otherId < this.id && otherId % 4 == this.id % 4) {
                     return true;
@@ -363,21 +388,15 @@ public class Player extends scout.sim.Player {
     }
 
     // Return true if there is an enemy at pointX, pointY.
-    private boolean isEnemyAtGivenPoint(int pointX, int pointY, ArrayList<ArrayList<ArrayList<String>>> nearbyIds) {
-        boolean enemy = false;
-
-        for(String ID : nearbyIds.get(pointX).get(pointY)) {
-            if(ID.charAt(0) == 'E') {
-                enemy = true;
-                break;
-            }
-        }
-
-        return enemy;
+    private boolean isEnemyAtGivenPoint(int pointX, int pointY, Neighborhood nearbyIds) {
+        return nearbyIds.hasKind(pointX, pointY, CellObject.Kind.ENEMY);
     }
 
     // Merge your data with that of the other player.
     private void mergeData(Player p) {
+        safeCells.or(p.safeCells);
+        enemyCells.or(p.enemyCells);
+
         HashSet<Point> unionLocations = new HashSet<Point>();
         unionLocations.addAll(safeLocations);
         unionLocations.addAll(p.safeLocations);
@@ -390,20 +409,39 @@ public class Player extends scout.sim.Player {
         enemyLocations = new ArrayList<Point>(unionEnemies);
     }
 
+    // Index of p in the knowledge bitmaps, or -1 if it is off the board.
+    private int cellIndex(Point p) {
+        if (p.x < 0 || p.x > n+1 || p.y < 0 || p.y > n+1) return -1;
+        return p.x*(n+2) + p.y;
+    }
+
+    // Add p to the safe locations unless it is already known to be safe.
+    private void addSafeLocation(Point p) {
+        int cell = cellIndex(p);
+        if (cell >= 0 ? !safeCells.get(cell) : !safeLocations.contains(p)) {
+            safeLocations.add(p);
+            if (cell >= 0) safeCells.set(cell);
+        }
+    }
+
+    // Add p to the enemy locations unless it is already known to be an enemy.
+    private void addEnemyLocation(Point p) {
+        int cell = cellIndex(p);
+        if (cell >= 0 ? !enemyCells.get(cell) : !enemyLocations.contains(p)) {
+            enemyLocations.add(p);
+            if (cell >= 0) enemyCells.set(cell);
+        }
+    }
+
     // Store information from this position.
-    private void gatherInfo(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    private void gatherInfo(Neighborhood nearbyIds, List<CellObject> concurrentObjects) {
         List<Point> enemyLocs = new ArrayList<Point>();
         List<Point> safeLocs = new ArrayList<Point>();
 
         for(int i = 0 ; i < 3; ++ i) {
             for(int j = 0 ; j < 3 ; ++ j) {
-                boolean safe = true;
-                if(nearbyIds.get(i).get(j) == null) continue;
-                for(String ID : nearbyIds.get(i).get(j)) {
-                    if(ID.charAt(0) == 'E') {
-                        safe = false;
-                    }
-                }
+                if(nearbyIds.isOffBoard(i, j)) continue;
+                boolean safe = !nearbyIds.hasKind(i, j, CellObject.Kind.ENEMY);
 
                 if (x == -1) {
                     if (!safe) {
@@ -415,13 +453,9 @@ public class Player extends scout.sim.Player {
                 else {
                     Point consideredLocation = new Point(x + i - 1, y + j - 1);
                     if(safe) {
-                        if(!safeLocations.contains(consideredLocation)) {
-                            safeLocations.add(consideredLocation);
-                        }
+                        addSafeLocation(consideredLocation);
                     } else {
-                        if(!enemyLocations.contains(consideredLocation)) {
-                            enemyLocations.add(consideredLocation);
-                        }
+                        addEnemyLocation(consideredLocation);
                     }
                 }
             }
@@ -439,17 +473,11 @@ public class Player extends scout.sim.Player {
         for (int i = unknownLocations.size() - 1; i > 0; --i) {
             Location loc = unknownLocations.get(i);
             for (Point p : loc.enemyLocations) {
-                Point enemy = new Point(prevX + p.x, prevY + p.y);
-                if (!enemyLocations.contains(enemy)) {
-                    enemyLocations.add(enemy);
-                }
+                addEnemyLocation(new Point(prevX + p.x, prevY + p.y));
             }
 
             for (Point p : loc.safeLocations) {
-                Point safe = new Point(prevX + p.x, prevY + p.y);
-                if (!safeLocations.contains(safe)) {
-                    safeLocations.add(safe);
-                }
+                addSafeLocation(new Point(prevX + p.x, prevY + p.y));
             }
 
             prevX = prevX - loc.dx;
@@ -37,23 +37,18 @@ public class Player extends scout.sim.Player {
     }
 
     /**
-     * nearby IDs is a 3 x 3 grid of nearby IDs with you in the center (1,1) position. A position is null if it is off the board.
-     * Enemy IDs start with 'E', Player start with 'P', Outpost with 'O' and landmark with 'L'.
+     * nearby is a 3 x 3 view of the nearby cells with you in the center (1,1) position.
+     * Ask it whether a position is off the board or which kinds of objects are on it.
      *
      */
     @Override
-    public Point move(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public Point move(Neighborhood nearby, List<CellObject> concurrentObjects) {
         //System.out.println("I'm at " + x + " " + y);
         System.out.println("move");
         for(int i = 0 ; i < 3; ++ i) {
             for(int j = 0 ; j < 3 ; ++ j) {
-                boolean safe = true;
-                if(nearbyIds.get(i).get(j) == null) continue;
-                for(String ID : nearbyIds.get(i).get(j)) {
-                    if(ID.charAt(0) == 'E') {
-                        safe = false;
-                    }
-                }
+                if(nearby.isOffBoard(i, j)) continue;
+                boolean safe = !nearby.hasKind(i, j, CellObject.Kind.ENEMY);
                 if(x != -1) {
                     Point consideredLocation = new Point(x + i - 1, y + j - 1);
                     if(safe) {
@@ -69,16 +64,17 @@ public class Player extends scout.sim.Player {
             }
         }
         for(CellObject obj : concurrentObjects) {
-            if (obj instanceof Player) {
+            CellObject.Kind kind = obj.getKind();
+            if (kind == CellObject.Kind.SCOUT) {
                 //communicate using custom methods?
                 ((Player) obj).stub();
-            } else if (obj instanceof Enemy) {
+            } else if (kind == CellObject.Kind.ENEMY) {
 
-            } else if (obj instanceof Landmark) {
+            } else if (kind == CellObject.Kind.LANDMARK) {
                 x = ((Landmark) obj).getLocation().x;
                 y = ((Landmark) obj).getLocation().y;
-            } else if (obj instanceof Outpost) {
-                Object data = ((Outpost) obj).getData();
+            } else if (kind == CellObject.Kind.OUTPOST) {
+                Object data = ((Outpost) obj).getSnapshot().getData();
                 if(data == null) {
                   ((Outpost) obj).setData((Object)"yay!!");
                 }
@@ -93,19 +89,19 @@ public class Player extends scout.sim.Player {
 
         if(x!=-1) {
             //move to outpost with least x and y coordinate
-            if (nearbyIds.get(0).get(0) != null) {
+            if (!nearby.isOffBoard(0, 0)) {
                 //move up and left
                 dx = -1;
                 dy = -1;
                 return new Point(-1, -1);
             }
-            if (nearbyIds.get(0).get(1) != null) {
+            if (!nearby.isOffBoard(0, 1)) {
                 //move down x
                 dx = -1;
                 dy = 0;
                 return new Point(-1, 0);
             }
-            if (nearbyIds.get(1).get(0) != null) {
+            if (!nearby.isOffBoard(1, 0)) {
                 //move down y
                 dy = -1;
                 dx = 0;
@@ -119,16 +115,26 @@ public class Player extends scout.sim.Player {
         return new Point((gen.nextInt(3)) - 1, (gen.nextInt(3)) - 1);
     }
 
+    @Override
+    public Point move(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+        return move(Neighborhood.of(nearbyIds), concurrentObjects);
+    }
+
     public void stub() {
         ;
     }
 
     @Override
-    public void communicate(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+    public void communicate(Neighborhood nearby, List<CellObject> concurrentObjects) {
         --t;
         System.out.println("communicate");
     }
 
+    @Override
+    public void communicate(ArrayList<ArrayList<ArrayList<String>>> nearbyIds, List<CellObject> concurrentObjects) {
+        communicate(Neighborhood.of(nearbyIds), concurrentObjects);
+    }
+
     @Override
     public void moveFinished() {
         x += dx;
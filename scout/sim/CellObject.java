@@ -1,11 +1,71 @@
 package scout.sim;
 import java.io.Serializable;
 public class CellObject implements Serializable{
+    /**
+    * What an object is, with the letter its ID starts with.
+    */
+    public enum Kind {
+        SCOUT('P'), ENEMY('E'), LANDMARK('L'), OUTPOST('O'), OTHER('?');
+
+        private final char prefix;
+
+        Kind(char prefix) {
+            this.prefix = prefix;
+        }
+
+        public char getPrefix() {
+            return prefix;
+        }
+
+        public static Kind of(String id) {
+            if (id != null && !id.isEmpty()) {
+                switch (id.charAt(0)) {
+                    case 'P': return SCOUT;
+                    case 'E': return ENEMY;
+                    case 'L': return LANDMARK;
+                    case 'O': return OUTPOST;
+                }
+            }
+            return OTHER;
+        }
+    }
+
 	private final String id;
+    private final Kind kind;
+    private final int index;
+
     public CellObject(String id) {
         this.id = id;
+        this.kind = Kind.of(id);
+        this.index = parseIndex(id);
+    }
+
+    protected CellObject(Kind kind, int index) {
+        this.id = kind.getPrefix() + Integer.toString(index);
+        this.kind = kind;
+        this.index = index;
+    }
+
+    private static int parseIndex(String id) {
+        try {
+            return Integer.parseInt(id.substring(1));
+        } catch (RuntimeException e) {
+            return -1;
+        }
     }
+
     public String getID() {
         return this.id;
     }
-}
\ No newline at end of file
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+    * @return the number in the ID, e.g. 123 for "E123", or -1 if there is none
+    */
+    public int getIndex() {
+        return index;
+    }
+}
@@ -3,6 +3,6 @@ package scout.sim;
 public class Enemy extends CellObject {
 
     public Enemy(int id) {
-        super("E" + id);
+        super(Kind.ENEMY, id);
     }
 }
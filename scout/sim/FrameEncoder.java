@@ -0,0 +1,270 @@
+package scout.sim;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes GUI frames into a reusable byte buffer, in time linear in the size of the frame.
+ * Coordinates are written y first, like script.js expects. The forms are:
+ *
+ *   data.txt    the whole frame as text: group, n, turns left, refresh, scouts, enemies, landmarks, scout indices, score
+ *   static.txt  the parts that never change: group, n, enemy count and cells,
+ *               landmark count and cells. The page asks for it once
+ *   frame.txt   the rest: turns left, refresh, scout count and cells, scout indices, score
+ *   frame.bin   frame.txt in binary: turns left, refresh, score and scout count as 32-bit
+ *               little-endian ints, then the scout cells as 16-bit pairs and their indices as 32-bit ints
+ *   delta.txt   what changed since the frame the page already has, given as ?since=seq.
+ *               A keyframe "K,seq,turns left,refresh,score,scout count and cells,scout indices"
+ *               when the page has no frame yet, otherwise a delta
+ *               "D,seq,since,turns left,refresh,score,count of moved scouts and for each: index in the frame, cell".
+ *               A delta only applies to a frame at least as recent as since
+ *   stream.txt  delta.txt pushed as Server-Sent Events, a keyframe when the stream opens and
+ *               then a delta for every new frame
+ *
+ * Every call to setTurn completes a frame and gives it the next sequence number.
+ */
+final class FrameEncoder {
+    static final int DATA = 0, STATIC = 1, FRAME = 2, BINARY = 3, DELTA = 4, STREAM = 5;
+    private static final String[] PATHS = {"data.txt", "static.txt", "frame.txt", "frame.bin", "delta.txt", "stream.txt"};
+
+    private final byte[] group;
+    private final int n;
+    private final List<Point> enemies, landmarks;
+    private final int[] scoutX, scoutY, scoutIndices;
+    private int turnsLeft, score;
+    private long refresh;
+    // sequence number of the last completed frame, and of the frame each scout last moved in
+    private int seq = 0;
+    private final int[] movedAt;
+
+    private static final byte[] KEYFRAME_TAG = {'K'}, DELTA_TAG = {'D'};
+
+    private byte[] buffer = new byte[1024];
+    private int length;
+    // the static part never changes, so it is encoded once
+    private byte[] staticText;
+
+    FrameEncoder(String group, int n, int[] scoutIndices, List<Point> enemies, List<Point> landmarks) {
+        this.group = group.getBytes(StandardCharsets.UTF_8);
+        this.n = n;
+        this.scoutIndices = scoutIndices.clone();
+        this.enemies = enemies;
+        this.landmarks = landmarks;
+        scoutX = new int[scoutIndices.length];
+        scoutY = new int[scoutIndices.length];
+        movedAt = new int[scoutIndices.length];
+    }
+
+    /**
+    * @return the form served for a request path, ignoring its query, or -1 if it is not a frame
+    */
+    static int form(String path) {
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        for (int form = 0; form < PATHS.length; ++form) {
+            if (PATHS[form].equals(path)) return form;
+        }
+        return -1;
+    }
+
+    /**
+    * @return the value of since in a delta.txt request, -1 if there is none
+    */
+    static int since(String path) {
+        int at = path.indexOf("since=");
+        if (at < 0 || (path.charAt(at - 1) != '?' && path.charAt(at - 1) != '&')) return -1;
+        int end = path.indexOf('&', at);
+        try {
+            return Integer.parseInt(path.substring(at + 6, end < 0 ? path.length() : end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+    * @return the sequence number of the current frame, 0 before the first one
+    */
+    int seq() {
+        return seq;
+    }
+
+    long refresh() {
+        return refresh;
+    }
+
+    void setScout(int k, int x, int y) {
+        if (scoutX[k] != x || scoutY[k] != y) movedAt[k] = seq + 1;
+        scoutX[k] = x;
+        scoutY[k] = y;
+    }
+
+    void setScouts(List<Point> locations) {
+        for (int k = 0; k < scoutX.length; ++k) setScout(k, locations.get(k).x, locations.get(k).y);
+    }
+
+    void setTurn(int turnsLeft, long refresh, int score) {
+        ++seq;
+        this.turnsLeft = turnsLeft;
+        this.refresh = refresh;
+        this.score = score;
+    }
+
+    /**
+    * Encodes the current frame. The bytes are in buffer() and stay valid until the next call.
+    * @return the number of bytes
+    */
+    int encode(int form) {
+        return encode(form, -1);
+    }
+
+    /**
+    * @param since sequence number of the frame the page has, for DELTA, -1 if it has none
+    */
+    int encode(int form, int since) {
+        length = 0;
+        if (form == DELTA || form == STREAM) {
+            boolean keyframe = since <= 0 || since > seq;
+            write(keyframe ? KEYFRAME_TAG : DELTA_TAG);
+            write(seq);
+            if (!keyframe) write(since);
+            write(turnsLeft);
+            write(refresh);
+            write(score);
+            if (keyframe) {
+                writeScouts();
+                for (int index : scoutIndices) write(index);
+            } else {
+                int moved = 0;
+                for (int k = 0; k < movedAt.length; ++k) {
+                    if (movedAt[k] > since) ++moved;
+                }
+                write(moved);
+                for (int k = 0; k < movedAt.length; ++k) {
+                    if (movedAt[k] <= since) continue;
+                    write(k);
+                    write(scoutY[k]);
+                    write(scoutX[k]);
+                }
+            }
+            // no separator after the last number
+            --length;
+            return length;
+        }
+        if (form == STATIC) {
+            if (staticText == null) {
+                writeStatic();
+                staticText = Arrays.copyOf(buffer, length);
+            }
+            return staticText.length;
+        }
+        if (form == BINARY) {
+            writeInt32(turnsLeft);
+            writeInt32((int) refresh);
+            writeInt32(score);
+            writeInt32(scoutX.length);
+            for (int k = 0; k < scoutX.length; ++k) {
+                writeInt16(scoutY[k]);
+                writeInt16(scoutX[k]);
+            }
+            for (int index : scoutIndices) writeInt32(index);
+            return length;
+        }
+        if (form == DATA) {
+            write(group);
+            write(n);
+            write(turnsLeft);
+            write(refresh);
+            writeScouts();
+            writePoints(enemies);
+            writePoints(landmarks);
+        } else {
+            write(turnsLeft);
+            write(refresh);
+            writeScouts();
+        }
+        for (int index : scoutIndices) write(index);
+        writeNumber(score);
+        return length;
+    }
+
+    byte[] buffer(int form) {
+        return form == STATIC ? staticText : buffer;
+    }
+
+    private void writeStatic() {
+        write(group);
+        write(n);
+        writePoints(enemies);
+        writePoints(landmarks);
+        // the last separator is dropped, like after the score of a frame
+        --length;
+    }
+
+    private void writeScouts() {
+        write(scoutX.length);
+        for (int k = 0; k < scoutX.length; ++k) {
+            write(scoutY[k]);
+            write(scoutX[k]);
+        }
+    }
+
+    private void writePoints(List<Point> points) {
+        write(points.size());
+        for (Point p : points) {
+            write(p.y);
+            write(p.x);
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length + 1);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        buffer[length++] = ',';
+    }
+
+    private void write(long v) {
+        writeNumber(v);
+        ensure(1);
+        buffer[length++] = ',';
+    }
+
+    private void writeNumber(long v) {
+        ensure(20);
+        if (v < 0) {
+            buffer[length++] = '-';
+            v = -v;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        // digits were written backwards
+        for (int i = start, j = length - 1; i < j; ++i, --j) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void writeInt16(int v) {
+        ensure(2);
+        buffer[length++] = (byte) v;
+        buffer[length++] = (byte) (v >> 8);
+    }
+
+    private void writeInt32(int v) {
+        ensure(4);
+        buffer[length++] = (byte) v;
+        buffer[length++] = (byte) (v >> 8);
+        buffer[length++] = (byte) (v >> 16);
+        buffer[length++] = (byte) (v >> 24);
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+    }
+}
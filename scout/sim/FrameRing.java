@@ -0,0 +1,122 @@
+package scout.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames handed from the simulation to the GUI server thread. The simulation fills in the
+ * scouts with setScout and completes a frame with publish, the server takes frames in order
+ * with next. What happens when the server falls behind depends on the policy:
+ *
+ *   DROP    the simulation never waits, the oldest frame is overwritten when the ring is full
+ *   BLOCK   the simulation waits in publish until the ring has room, so it runs as fast as the page polls
+ *   RECORD  every frame is kept, the simulation never waits and the page shows all of them
+ */
+final class FrameRing {
+    private static final class Frame {
+        final int[] x, y;
+        int turnsLeft, score;
+        long refresh;
+
+        Frame(int s) {
+            x = new int[s];
+            y = new int[s];
+        }
+    }
+
+    private final GameConfig.FramePolicy policy;
+    private final int capacity;
+    // the frame being filled in by the simulation
+    private final Frame next;
+    // DROP and BLOCK reuse capacity slots, frame i is in slot i % capacity; RECORD appends
+    private final List<Frame> frames = new ArrayList<>();
+    // frames published so far and frames taken by the server
+    private long published = 0, taken = 0;
+    private boolean finished = false;
+    // called outside the lock whenever a frame is published or the game is over
+    private volatile Runnable listener = null;
+
+    FrameRing(int s, GameConfig.FramePolicy policy, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Frame buffer capacity must be positive");
+        this.policy = policy;
+        this.capacity = capacity;
+        next = new Frame(s);
+    }
+
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    void setScout(int k, int x, int y) {
+        next.x[k] = x;
+        next.y[k] = y;
+    }
+
+    /**
+    * Completes the current frame. Only BLOCK waits, for the server to take an older frame.
+    */
+    void publish(int turnsLeft, long refresh, int score) throws InterruptedException {
+        add(turnsLeft, refresh, score);
+        Runnable listener = this.listener;
+        if (listener != null) listener.run();
+    }
+
+    private synchronized void add(int turnsLeft, long refresh, int score) throws InterruptedException {
+        if (policy == GameConfig.FramePolicy.BLOCK) {
+            while (published - taken >= capacity) wait();
+        }
+        Frame frame;
+        if (policy == GameConfig.FramePolicy.RECORD || frames.size() < capacity) {
+            frame = new Frame(next.x.length);
+            frames.add(frame);
+        } else {
+            frame = frames.get((int) (published % capacity));
+        }
+        System.arraycopy(next.x, 0, frame.x, 0, next.x.length);
+        System.arraycopy(next.y, 0, frame.y, 0, next.y.length);
+        frame.turnsLeft = turnsLeft;
+        frame.refresh = refresh;
+        frame.score = score;
+        ++published;
+        notifyAll();
+    }
+
+    /**
+    * Marks the last published frame as the final one, so that the server stops waiting for more.
+    */
+    void finish() {
+        synchronized (this) {
+            finished = true;
+            notifyAll();
+        }
+        Runnable listener = this.listener;
+        if (listener != null) listener.run();
+    }
+
+    /**
+    * Waits for a frame the server has not taken yet and puts it into the encoder.
+    * @return false if there is none because the game is over, the encoder is left as it was
+    */
+    synchronized boolean next(FrameEncoder encoder) throws InterruptedException {
+        while (taken == published && !finished) wait();
+        return poll(encoder);
+    }
+
+    /**
+    * Like next, but does not wait.
+    * @return false if the server has taken every frame published so far
+    */
+    synchronized boolean poll(FrameEncoder encoder) {
+        if (taken == published) return false;
+        // frames overwritten before the server got to them are skipped
+        if (policy == GameConfig.FramePolicy.DROP && published - taken > capacity)
+            taken = published - capacity;
+        Frame frame = frames.get((int) (policy == GameConfig.FramePolicy.RECORD ? taken : taken % capacity));
+        ++taken;
+        for (int k = 0; k < frame.x.length; ++k) encoder.setScout(k, frame.x[k], frame.y[k]);
+        encoder.setTurn(frame.turnsLeft, frame.refresh, frame.score);
+        notifyAll();
+        return true;
+    }
+}
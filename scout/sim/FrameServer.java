@@ -0,0 +1,110 @@
+package scout.sim;
+
+import java.io.IOException;
+
+/**
+ * Serves the GUI of a live game on its own thread, so that the simulation does not wait for
+ * the page unless the frame policy says so. Every frame request gets the next frame from the
+ * ring; once the game is over the final frame is served until the process exits.
+ *
+ * Pages that open stream.txt are pushed every frame instead, no faster than the refresh of
+ * the previous frame, so that they show the game at the requested fps without polling.
+ */
+final class FrameServer implements Runnable {
+    private final HTTPServer server;
+    private final FrameEncoder frames;
+    private final FrameRing ring;
+    // when the next frame may be pushed to the streams
+    private long due = 0;
+    // sequence number of the last frame every open stream has, frames taken by polling
+    // requests move the encoder past it
+    private int pushed = 0;
+
+    FrameServer(HTTPServer server, FrameEncoder frames, FrameRing ring) {
+        this.server = server;
+        this.frames = frames;
+        this.ring = ring;
+    }
+
+    /**
+    * Starts serving on a new thread. The thread keeps the JVM alive after the game, so that
+    * the page can still show it.
+    */
+    Thread start() {
+        ring.setListener(server::wakeup);
+        Thread thread = new Thread(this, "gui");
+        thread.start();
+        return thread;
+    }
+
+    public void run() {
+        try {
+            for (;;) {
+                String path = request();
+                if (path == null) continue;
+                int form = FrameEncoder.form(path);
+                if (form < 0) {
+                    if (!Simulator.replyStatic(server, path)) reply("");
+                    continue;
+                }
+                if (form == FrameEncoder.STREAM) {
+                    if (frames.seq() == 0) ring.next(frames);
+                    stream();
+                    continue;
+                }
+                if (form != FrameEncoder.STATIC) ring.next(frames);
+                Simulator.replyFrame(server, frames, form, FrameEncoder.since(path));
+            }
+        } catch (InterruptedException e) {
+            System.err.println("GUI server interrupted");
+        }
+    }
+
+    /**
+    * Waits for the next request. While there are streams, pushes the frames published meanwhile.
+    * @return the requested path, or null if the wait was cut short to push frames
+    */
+    private String request() {
+        try {
+            if (server.streams() == 0) return server.request();
+            long wait = due - System.currentTimeMillis();
+            if (wait <= 0 && (frames.seq() > pushed || ring.poll(frames))) {
+                push();
+                due = System.currentTimeMillis() + Math.max(frames.refresh(), 0);
+                return null;
+            }
+            // woken up by the ring when a frame is published
+            return server.request(wait <= 0 ? -1 : wait);
+        } catch (IOException e) {
+            System.err.println("HTTP request error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // sends the streams what changed since the last frame they got
+    private void push() {
+        int length = frames.encode(FrameEncoder.STREAM, pushed);
+        server.push(frames.buffer(FrameEncoder.STREAM), 0, length);
+        pushed = frames.seq();
+    }
+
+    private void stream() {
+        // the open streams catch up first, so that they all stay on the same frame
+        if (server.streams() > 0 && frames.seq() > pushed) push();
+        pushed = frames.seq();
+        try {
+            int length = frames.encode(FrameEncoder.STREAM, -1);
+            server.stream(frames.buffer(FrameEncoder.STREAM), 0, length);
+        } catch (IOException e) {
+            System.err.println("HTTP stream error: " + e.getMessage());
+        }
+    }
+
+    private void reply(String content) {
+        try {
+            server.reply(content);
+        } catch (IOException e) {
+            System.err.println("HTTP dynamic reply error: " + e.getMessage());
+        }
+    }
+}
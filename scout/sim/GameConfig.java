@@ -0,0 +1,221 @@
+package scout.sim;
+
+/**
+ * Everything needed to play one game. Players and mappers are given by package name,
+ * the same way as on the command line (e.g. "g5", "sparse_landmarks", "random_enemymap").
+ */
+public class GameConfig {
+    /**
+     * What the simulation does when the GUI falls behind, see FrameRing.
+     */
+    public enum FramePolicy { DROP, BLOCK, RECORD }
+
+    private final String player;
+    private final String landmarkMapper;
+    private final String enemyMapper;
+    private final int n, s, e, t;
+    private long seed;
+    private boolean verbose = false;
+    private boolean gui = false;
+    private long guiRefresh = 0;
+    private FramePolicy framePolicy = FramePolicy.BLOCK;
+    private int frameBuffer = 1;
+    private long playTimeout = 1000;
+    private long initTimeout = 1000;
+    private boolean trusted = false;
+    private int phaseThreads = 1;
+    private String trace = null;
+    private String maps = null;
+
+    public GameConfig(String player, String landmarkMapper, String enemyMapper, int n, int s, int e, int t, long seed) {
+        if (player == null || landmarkMapper == null || enemyMapper == null)
+            throw new IllegalArgumentException("Missing player or mapper name");
+        if (n < 0 || s < 0 || e < 0 || t < 0)
+            throw new IllegalArgumentException("Negative game parameter");
+        this.player = player;
+        this.landmarkMapper = landmarkMapper;
+        this.enemyMapper = enemyMapper;
+        this.n = n;
+        this.s = s;
+        this.e = e;
+        this.t = t;
+        this.seed = seed;
+    }
+
+    private GameConfig(GameConfig other) {
+        this(other.player, other.landmarkMapper, other.enemyMapper, other.n, other.s, other.e, other.t, other.seed);
+        verbose = other.verbose;
+        gui = other.gui;
+        guiRefresh = other.guiRefresh;
+        framePolicy = other.framePolicy;
+        frameBuffer = other.frameBuffer;
+        playTimeout = other.playTimeout;
+        initTimeout = other.initTimeout;
+        trusted = other.trusted;
+        phaseThreads = other.phaseThreads;
+        trace = other.trace;
+        maps = other.maps;
+    }
+
+    /**
+    * @return a copy of this configuration played with another seed
+    */
+    public GameConfig withSeed(long seed) {
+        GameConfig copy = new GameConfig(this);
+        copy.seed = seed;
+        return copy;
+    }
+
+    public GameConfig setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    /**
+    * @param guiRefresh milliseconds between frames, negative to step manually
+    */
+    public GameConfig setGui(boolean gui, long guiRefresh) {
+        this.gui = gui;
+        this.guiRefresh = guiRefresh;
+        return this;
+    }
+
+    /**
+    * @param frameBuffer frames kept for the GUI, ignored by RECORD which keeps them all.
+    *                    The default, BLOCK with one frame, plays in step with the page
+    */
+    public GameConfig setFrames(FramePolicy framePolicy, int frameBuffer) {
+        if (framePolicy == null)
+            throw new IllegalArgumentException("Missing frame policy");
+        if (frameBuffer < 1)
+            throw new IllegalArgumentException("Frame buffer must be positive");
+        this.framePolicy = framePolicy;
+        this.frameBuffer = frameBuffer;
+        return this;
+    }
+
+    public GameConfig setPlayTimeout(long playTimeout) {
+        this.playTimeout = playTimeout;
+        return this;
+    }
+
+    public GameConfig setInitTimeout(long initTimeout) {
+        this.initTimeout = initTimeout;
+        return this;
+    }
+
+    /**
+    * Trusted players are called directly on the simulation thread. Their timeouts are not
+    * enforced, calls that go over them are only reported afterwards.
+    */
+    public GameConfig setTrusted(boolean trusted) {
+        this.trusted = trusted;
+        return this;
+    }
+
+    /**
+    * Threads used to call init and communicate on scouts in different cells at the same time,
+    * 1 to call every scout in turn. With more than one thread, every scout communicates with the
+    * board as it was at the start of the turn, and scouts arriving on a cell that turn are moved
+    * after all of them have communicated, instead of right after their own communicate.
+    */
+    public GameConfig setPhaseThreads(int phaseThreads) {
+        if (phaseThreads < 1)
+            throw new IllegalArgumentException("Phase threads must be positive");
+        this.phaseThreads = phaseThreads;
+        return this;
+    }
+
+    /**
+    * @param trace file to record the game into, see TraceWriter, or null not to record it
+    */
+    public GameConfig setTrace(String trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+    * @param maps file to save the final maps into as images, see MapRenderer, or null not to save them.
+    *             Every map gets its own file, with the name of the map inserted before the extension
+    */
+    public GameConfig setMaps(String maps) {
+        this.maps = maps;
+        return this;
+    }
+
+    public String getPlayer() {
+        return player;
+    }
+
+    public String getLandmarkMapper() {
+        return landmarkMapper;
+    }
+
+    public String getEnemyMapper() {
+        return enemyMapper;
+    }
+
+    public int getBoardSize() {
+        return n;
+    }
+
+    public int getScouts() {
+        return s;
+    }
+
+    public int getEnemies() {
+        return e;
+    }
+
+    public int getTurns() {
+        return t;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public boolean isGuiEnabled() {
+        return gui;
+    }
+
+    public long getGuiRefresh() {
+        return guiRefresh;
+    }
+
+    public FramePolicy getFramePolicy() {
+        return framePolicy;
+    }
+
+    public int getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    public long getPlayTimeout() {
+        return playTimeout;
+    }
+
+    public long getInitTimeout() {
+        return initTimeout;
+    }
+
+    public boolean isTrusted() {
+        return trusted;
+    }
+
+    public int getPhaseThreads() {
+        return phaseThreads;
+    }
+
+    public String getTrace() {
+        return trace;
+    }
+
+    public String getMaps() {
+        return maps;
+    }
+}
@@ -0,0 +1,71 @@
+package scout.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one game: the score and how every outpost contributed to it.
+ */
+public class GameResult {
+    public static final int OUTPOSTS = 4;
+
+    private final long seed;
+    private final int score;
+    private final int[] enemiesDiscovered;
+    private final int[] safeDiscovered;
+    private final int[] mistakes;
+    private final List<Point> missedEnemies;
+    private final int turnsPlayed;
+
+    GameResult(long seed, int score, int turnsPlayed, int[] enemiesDiscovered, int[] safeDiscovered, int[] mistakes, List<Point> missedEnemies) {
+        this.seed = seed;
+        this.score = score;
+        this.turnsPlayed = turnsPlayed;
+        this.enemiesDiscovered = enemiesDiscovered.clone();
+        this.safeDiscovered = safeDiscovered.clone();
+        this.mistakes = mistakes.clone();
+        this.missedEnemies = Collections.unmodifiableList(new ArrayList<>(missedEnemies));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+    * @return turns played, less than the configured turns if every scout was done before the end
+    */
+    public int getTurnsPlayed() {
+        return turnsPlayed;
+    }
+
+    /**
+    * @param outpost index of the outpost, 0 to 3
+    */
+    public int getEnemiesDiscovered(int outpost) {
+        return enemiesDiscovered[outpost];
+    }
+
+    public int getSafeDiscovered(int outpost) {
+        return safeDiscovered[outpost];
+    }
+
+    public int getMistakes(int outpost) {
+        return mistakes[outpost];
+    }
+
+    public int getEnemiesMissed() {
+        return missedEnemies.size();
+    }
+
+    /**
+    * @return locations of the enemies that no outpost reported
+    */
+    public List<Point> getMissedEnemies() {
+        return missedEnemies;
+    }
+}
@@ -1,60 +1,209 @@
-package scout.sim;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-public class Grid {
-    List<List<List<CellObject>>> grid;
-    Map<String, Point> location;
-    int size;
-    public Grid(int n) {
-        size = n;
-        grid = new ArrayList<List<List<CellObject>>>();
-        location = new HashMap<>();
-        for(int i = 0 ; i < n + 2 ; ++ i) {
-            List<List<CellObject>> row = new ArrayList<>();
-            for(int j = 0 ; j < n + 2; ++ j) {
-                List<CellObject> cell = new ArrayList<>();
-                row.add(cell);
-            }
-            grid.add(row);
-        }
-    }
-
-    public List<CellObject> getCell(int x, int y) {
-        if(x < 0 || x > size  + 1 || y < 0 || y > size + 1) return null;
-        //System.out.println("getcell");
-        return grid.get(x).get(y);
-    }
-
-    public List<CellObject> getCell(Point p) {
-        return getCell(p.x, p.y);
-    }
-
-    public Point getLocationWithOffset(Point p, Point offset) {
-        int x = p.x + offset.x;
-        int y = p.y + offset.y;
-        if(x > size + 1 || x < 0 || y < 0 || y > size + 1) return null;
-        return new Point(x,y);
-    }
-
-    public void addAllCellObjects(List<CellObject> cellObjects, List<Point> locations) throws Exception{
-        for(int i = 0 ;i < cellObjects.size(); ++i) {
-            if(!( (locations.get(i).x >= 0 && locations.get(i).x <= size + 1
-                && locations.get(i).y >= 0 && locations.get(i).y <= size + 1))) 
-                throw new Exception("cell object location out of bounds");
-            //System.out.println(i +" "+ locations.get(i).x +" "+locations.get(i).y);
-            this.getCell(locations.get(i)).add(cellObjects.get(i));
-            this.location.put(cellObjects.get(i).getID(),locations.get(i));
-        }
-    }
-
-    public void update(CellObject object, Point newLocation) {
-        Point oldLocation = this.location.get(object.getID());
-        this.getCell(oldLocation).remove(object);
-        this.getCell(newLocation).add(object);
-        this.location.put(object.getID(), newLocation);
-    }
-}
+package scout.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The (n+2)x(n+2) board. Cells are numbered x * (n + 2) + y and objects get a dense
+ * index when they are added. The objects of a cell form a linked list threaded through
+ * int arrays, kept in the order they were added, like the old per-cell lists.
+ */
+public class Grid {
+    int size;
+    private final int side;
+    // first and last object of every cell, -1 if the cell is empty
+    private final int[] head;
+    private final int[] tail;
+    // value of the clock when each cell last changed, bumped on every link and unlink
+    private final int[] stamp;
+    private int clock;
+    // for every object: its cell and its neighbours in the cell list, -1 at the ends
+    private int[] cellOf;
+    private int[] next;
+    private int[] prev;
+    private CellObject[] objects;
+    private int count;
+    private final Map<CellObject, Integer> index;
+
+    public Grid(int n) {
+        size = n;
+        side = n + 2;
+        head = new int[side * side];
+        tail = new int[side * side];
+        stamp = new int[side * side];
+        Arrays.fill(head, -1);
+        Arrays.fill(tail, -1);
+        cellOf = new int[16];
+        next = new int[16];
+        prev = new int[16];
+        objects = new CellObject[16];
+        index = new IdentityHashMap<>();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+    * @return the index of cell (x,y), or -1 if it is off the board
+    */
+    public int cellIndex(int x, int y) {
+        if(x < 0 || x > size + 1 || y < 0 || y > size + 1) return -1;
+        return x * side + y;
+    }
+
+    public int cellX(int cell) {
+        return cell / side;
+    }
+
+    public int cellY(int cell) {
+        return cell % side;
+    }
+
+    /**
+    * @return the index of the first object in the cell, or -1 if it is empty
+    */
+    public int first(int cell) {
+        return head[cell];
+    }
+
+    /**
+    * @return the index of the object after obj in its cell, or -1 if it is the last one
+    */
+    public int next(int obj) {
+        return next[obj];
+    }
+
+    /**
+    * @return a counter that goes up every time an object enters or leaves a cell
+    */
+    public int clock() {
+        return clock;
+    }
+
+    /**
+    * @return the value of clock() when the cell last changed
+    */
+    public int stamp(int cell) {
+        return stamp[cell];
+    }
+
+    public CellObject object(int obj) {
+        return objects[obj];
+    }
+
+    public int objectCount() {
+        return count;
+    }
+
+    /**
+    * @return the dense index of an object on the board, or -1 if it is not on the board
+    */
+    public int indexOf(CellObject object) {
+        Integer i = index.get(object);
+        return i == null ? -1 : i;
+    }
+
+    /**
+    * @return the cell the object with the given index is on
+    */
+    public int cellOf(int obj) {
+        return cellOf[obj];
+    }
+
+    public Point getLocation(CellObject object) {
+        int obj = indexOf(object);
+        if(obj < 0) return null;
+        return new Point(cellX(cellOf[obj]), cellY(cellOf[obj]));
+    }
+
+    /**
+    * @return a copy of the objects in cell (x,y) in the order they were added,
+    *         or null if the cell is off the board
+    */
+    public List<CellObject> getCell(int x, int y) {
+        int cell = cellIndex(x, y);
+        if(cell < 0) return null;
+        List<CellObject> objs = new ArrayList<>();
+        for(int obj = head[cell]; obj >= 0; obj = next[obj]) {
+            objs.add(objects[obj]);
+        }
+        return objs;
+    }
+
+    /**
+    * Replaces the contents of objs with the objects of the given cell, without allocating.
+    */
+    public void copyCell(int cell, List<CellObject> objs) {
+        objs.clear();
+        for(int obj = head[cell]; obj >= 0; obj = next[obj]) {
+            objs.add(objects[obj]);
+        }
+    }
+
+    public List<CellObject> getCell(Point p) {
+        return getCell(p.x, p.y);
+    }
+
+    public Point getLocationWithOffset(Point p, Point offset) {
+        int x = p.x + offset.x;
+        int y = p.y + offset.y;
+        if(x > size + 1 || x < 0 || y < 0 || y > size + 1) return null;
+        return new Point(x,y);
+    }
+
+    public void addAllCellObjects(List<CellObject> cellObjects, List<Point> locations) throws Exception{
+        for(int i = 0 ;i < cellObjects.size(); ++i) {
+            if(!( (locations.get(i).x >= 0 && locations.get(i).x <= size + 1
+                && locations.get(i).y >= 0 && locations.get(i).y <= size + 1)))
+                throw new Exception("cell object location out of bounds");
+            int obj = count++;
+            if(obj == objects.length) grow();
+            objects[obj] = cellObjects.get(i);
+            index.put(cellObjects.get(i), obj);
+            link(obj, cellIndex(locations.get(i).x, locations.get(i).y));
+        }
+    }
+
+    public void update(CellObject object, Point newLocation) {
+        update(indexOf(object), cellIndex(newLocation.x, newLocation.y));
+    }
+
+    /**
+    * Moves the object with the given index to the end of the given cell.
+    */
+    public void update(int obj, int cell) {
+        unlink(obj);
+        link(obj, cell);
+    }
+
+    private void link(int obj, int cell) {
+        stamp[cell] = ++clock;
+        cellOf[obj] = cell;
+        next[obj] = -1;
+        prev[obj] = tail[cell];
+        if(tail[cell] < 0) head[cell] = obj;
+        else next[tail[cell]] = obj;
+        tail[cell] = obj;
+    }
+
+    private void unlink(int obj) {
+        int cell = cellOf[obj];
+        stamp[cell] = ++clock;
+        if(prev[obj] < 0) head[cell] = next[obj];
+        else next[prev[obj]] = next[obj];
+        if(next[obj] < 0) tail[cell] = prev[obj];
+        else prev[next[obj]] = prev[obj];
+    }
+
+    private void grow() {
+        int capacity = objects.length * 2;
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+}
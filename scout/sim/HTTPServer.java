@@ -2,29 +2,75 @@ package scout.sim;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.time.*;
 import java.time.format.*;
-import java.nio.channels.*;
+import java.util.*;
 
+/**
+ * Single threaded HTTP server on a selector. Connections are kept alive between requests,
+ * request() waits on all of them at once for the next complete request and the reply goes
+ * back on the connection it came from. Small files are kept in direct buffers once read,
+ * larger ones are sent from the file with transferTo.
+ *
+ * A request can also be answered with stream(), which turns its connection into a Server-Sent
+ * Events stream: the connection stays open and every push() sends an event to all streams,
+ * dropping the ones whose socket buffer is full.
+ */
 class HTTPServer {
 
-    private ServerSocket socket = null;
+    // files up to this size are cached in memory
+    private static final int CACHE_LIMIT = 1 << 20;
+
+    private static final byte[] EVENT_START = {'d', 'a', 't', 'a', ':', ' '}, EVENT_END = {'\n', '\n'};
+
+    private ServerSocketChannel socket = null;
+
+    private Selector selector = null;
+
+    // used to wait until a connection can take more of a reply
+    private Selector writer = null;
+
+    private SocketChannel connection = null;
 
-    private Socket connection = null;
+    private boolean keepAlive = false;
 
-    private byte[] buffer = new byte [8192];
+    // connections answered with stream(), they get every push()
+    private final Set<SocketChannel> streams = new LinkedHashSet<>();
+
+    // bytes read from every connection that are not part of a handled request yet
+    private final Map<SocketChannel, ByteBuffer> pending = new HashMap<>();
+
+    private final Map<File, Cached> cache = new HashMap<>();
+
+    private static class Cached {
+	final long modified;
+	final ByteBuffer content;
+
+	Cached(long modified, ByteBuffer content)
+	{
+	    this.modified = modified;
+	    this.content = content;
+	}
+    }
 
     public HTTPServer() throws IOException
     {
-	socket = new ServerSocket();
+	socket = ServerSocketChannel.open();
 	socket.bind(null);
-	if (!socket.isBound())
+	if (socket.getLocalAddress() == null)
 	    throw new NotYetBoundException();
+	socket.configureBlocking(false);
+	selector = Selector.open();
+	writer = Selector.open();
+	socket.register(selector, SelectionKey.OP_ACCEPT);
     }
 
     public int port()
     {
-	return socket == null ? -1 : socket.getLocalPort();
+	return socket == null ? -1 : socket.socket().getLocalPort();
     }
 
     public void close() throws IOException
@@ -32,106 +78,313 @@ class HTTPServer {
 	if (connection != null)
 	    throw new ConnectionPendingException();
 	if (socket != null) {
+	    for (SocketChannel channel : pending.keySet())
+		try {
+		    channel.close();
+		} catch (IOException e) {}
+	    pending.clear();
+	    streams.clear();
 	    socket.close();
+	    selector.close();
+	    writer.close();
 	    socket = null;
 	}
     }
 
+    /**
+     * Reads the file now so that later replies are sent from memory.
+     */
+    public void preload(File file) throws IOException
+    {
+	cached(file);
+    }
+
     public String request() throws IOException
+    {
+	for (;;) {
+	    String path = request(-1);
+	    if (path != null) return path;
+	}
+    }
+
+    /**
+     * Waits at most timeout ms for a request, forever if it is negative.
+     * @return the requested path, or null if there was none in time or wakeup() was called
+     */
+    public String request(long timeout) throws IOException
     {
 	if (connection != null)
 	    throw new ConnectionPendingException();
-	connection = socket.accept();
-	InputStream in = connection.getInputStream();
-	int ch, i = 0;
-	do {
-	    try {
-		ch = in.read();
-	    } catch (IOException e1) {
-		try {
-		    connection.close();
-		} catch (IOException e2) {}
-		connection = null;
-		throw e1;
-	    }
-	    if (ch < 0 || i == buffer.length) {
+	// a request may already be buffered, e.g. when the client pipelines them
+	String path = parsePending();
+	if (path != null) return path;
+	if (timeout < 0) selector.select();
+	else if (timeout == 0) selector.selectNow();
+	else selector.select(timeout);
+	Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+	while (keys.hasNext()) {
+	    SelectionKey key = keys.next();
+	    keys.remove();
+	    if (!key.isValid()) continue;
+	    if (key.isAcceptable()) {
+		SocketChannel channel = socket.accept();
+		if (channel == null) continue;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.register(selector, SelectionKey.OP_READ);
+		pending.put(channel, ByteBuffer.allocate(8192));
+	    } else if (key.isReadable()) {
+		SocketChannel channel = (SocketChannel) key.channel();
+		ByteBuffer buffer = pending.get(channel);
+		int bytes;
 		try {
-		    connection.close();
-		} catch (IOException e) {}
-		connection = null;
-		throw new UnknownServiceException("Incomplete HTTP request");
+		    bytes = channel.read(buffer);
+		} catch (IOException e) {
+		    bytes = -1;
+		}
+		if (bytes < 0) {
+		    drop(channel);
+		    continue;
+		}
+		if (!buffer.hasRemaining() && end(buffer) < 0) {
+		    drop(channel);
+		    throw new UnknownServiceException("Incomplete HTTP request");
+		}
 	    }
-	    buffer[i++] = (byte) ch;
-	} while (i < 4 || buffer[i - 1] != '\n' || buffer[i - 2] != '\r'
-		 || buffer[i - 3] != '\n' || buffer[i - 4] != '\r');
-	for (i = 0 ; buffer[i] != '\r' ; ++i);
-	String line = new String(buffer, 0, i);
+	}
+	return parsePending();
+    }
+
+    /**
+     * Makes a request(timeout) waiting on another thread return null. Safe to call from any thread.
+     */
+    public void wakeup()
+    {
+	selector.wakeup();
+    }
+
+    private String parsePending() throws IOException
+    {
+	for (Map.Entry<SocketChannel, ByteBuffer> entry : pending.entrySet()) {
+	    String path = parse(entry.getKey(), entry.getValue());
+	    if (path != null) return path;
+	}
+	return null;
+    }
+
+    // index just after the blank line ending the first request in the buffer, -1 if there is none yet
+    private static int end(ByteBuffer buffer)
+    {
+	for (int i = 3 ; i < buffer.position() ; ++i)
+	    if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r'
+		&& buffer.get(i - 2) == '\n' && buffer.get(i - 3) == '\r')
+		return i + 1;
+	return -1;
+    }
+
+    private String parse(SocketChannel channel, ByteBuffer buffer) throws IOException
+    {
+	int end = end(buffer);
+	if (end < 0) return null;
+	String request = new String(buffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+	// keep what follows for the next request
+	buffer.flip();
+	buffer.position(end);
+	buffer.compact();
+	String[] lines = request.split("\r\n");
+	String line = lines[0];
 	String[] parts = line.split(" ");
 	if (parts.length != 3 || !parts[0].equals("GET")
 	    || !parts[1].startsWith("/")
 	    || !parts[2].equals("HTTP/1.1")) {
-	    try {
-		connection.close();
-	    } catch (IOException e) {}
-	    connection = null;
+	    drop(channel);
 	    throw new UnknownServiceException("Invalid HTTP request: " + line);
 	}
+	keepAlive = true;
+	for (int i = 1 ; i < lines.length ; ++i)
+	    if (lines[i].regionMatches(true, 0, "Connection:", 0, 11)
+		&& lines[i].substring(11).trim().equalsIgnoreCase("close"))
+		keepAlive = false;
+	connection = channel;
 	return parts[1].substring(1);
     }
 
-    public void reply(File file) throws IOException
+    private void drop(SocketChannel channel)
+    {
+	pending.remove(channel);
+	streams.remove(channel);
+	SelectionKey key = channel.keyFor(selector);
+	if (key != null) key.cancel();
+	try {
+	    channel.close();
+	} catch (IOException e) {}
+    }
+
+    private ByteBuffer header(long length)
     {
-	if (connection == null)
-	    throw new NoConnectionPendingException();
-	FileInputStream in = new FileInputStream(file);
-	OutputStream out = connection.getOutputStream();
 	String date = ZonedDateTime.now(ZoneId.of("GMT")).format(
 								 DateTimeFormatter.RFC_1123_DATE_TIME);
 	String header = "HTTP/1.1 200 OK\r\n";
-	long length = file.length();
 	header += "Content-Length: " + length + "\r\n";
 	header += "Cache-Control: no-cache, no-store\r\n";
+	header += "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n";
 	header += "Date: " + date + "\r\n\r\n";
+	return ByteBuffer.wrap(header.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    // writes the whole buffer, waiting whenever the connection cannot take more
+    private void write(ByteBuffer buffer) throws IOException
+    {
+	while (buffer.hasRemaining())
+	    if (connection.write(buffer) == 0) waitWritable();
+    }
+
+    private void waitWritable() throws IOException
+    {
+	SelectionKey key = connection.register(writer, SelectionKey.OP_WRITE);
+	try {
+	    if (writer.select(10000) == 0)
+		throw new IOException("Connection stalled");
+	    writer.selectedKeys().clear();
+	} finally {
+	    key.cancel();
+	    writer.selectNow();
+	}
+    }
+
+    // ends the reply, closing the connection unless it is kept alive
+    private void finish(boolean ok)
+    {
+	if (!ok || !keepAlive) drop(connection);
+	connection = null;
+    }
+
+    private Cached cached(File file) throws IOException
+    {
+	Cached cached = cache.get(file);
+	long modified = file.lastModified();
+	if (cached != null && cached.modified == modified)
+	    return cached;
+	cache.remove(file);
+	if (file.length() > CACHE_LIMIT)
+	    return null;
+	try (FileChannel in = FileChannel.open(file.toPath())) {
+	    ByteBuffer content = ByteBuffer.allocateDirect((int) in.size());
+	    while (content.hasRemaining())
+		if (in.read(content) < 0)
+		    throw new IOException("File modified during read");
+	    content.flip();
+	    cached = new Cached(modified, content);
+	}
+	cache.put(file, cached);
+	return cached;
+    }
+
+    public void reply(File file) throws IOException
+    {
+	if (connection == null)
+	    throw new NoConnectionPendingException();
+	boolean ok = false;
 	try {
-	    out.write(header.getBytes());
-	    int bytes;
-	    while ((bytes = in.read(buffer)) >= 0) {
-		length -= bytes;
-		if (length < 0) break;
-		out.write(buffer, 0, bytes);
+	    Cached cached = cached(file);
+	    if (cached != null) {
+		ByteBuffer content = cached.content.duplicate();
+		write(header(content.remaining()));
+		write(content);
+	    } else {
+		try (FileChannel in = FileChannel.open(file.toPath())) {
+		    long length = in.size();
+		    write(header(length));
+		    // zero copy from the file to the socket
+		    long position = 0;
+		    while (position < length) {
+			long bytes = in.transferTo(position, length - position, connection);
+			if (bytes == 0) waitWritable();
+			position += bytes;
+		    }
+		}
 	    }
-	    if (length != 0)
-		throw new IOException("File modified during send");
+	    ok = true;
 	} finally {
+	    finish(ok);
+	}
+    }
+
+    /**
+     * Answers the pending request with an event stream and sends it its first event.
+     */
+    public void stream(byte[] content, int offset, int length) throws IOException
+    {
+	if (connection == null)
+	    throw new NoConnectionPendingException();
+	boolean ok = false;
+	try {
+	    String header = "HTTP/1.1 200 OK\r\n";
+	    header += "Content-Type: text/event-stream\r\n";
+	    header += "Cache-Control: no-cache, no-store\r\n";
+	    header += "Connection: keep-alive\r\n\r\n";
+	    write(ByteBuffer.wrap(header.getBytes(StandardCharsets.ISO_8859_1)));
+	    write(event(content, offset, length));
+	    ok = true;
+	} finally {
+	    if (ok) streams.add(connection);
+	    else drop(connection);
+	    connection = null;
+	}
+    }
+
+    /**
+     * @return the number of open event streams
+     */
+    public int streams()
+    {
+	return streams.size();
+    }
+
+    /**
+     * Sends an event to every open stream without waiting. A stream that fails or cannot take
+     * the whole event right away is closed, so that a stalled page does not hold up the others;
+     * the page reconnects and starts again from a keyframe.
+     */
+    public void push(byte[] content, int offset, int length)
+    {
+	ByteBuffer event = event(content, offset, length);
+	for (SocketChannel channel : new ArrayList<>(streams)) {
+	    ByteBuffer buffer = event.duplicate();
 	    try {
-		in.close();
-	    } catch (IOException e) {}
-	    try {
-		connection.close();
+		channel.write(buffer);
 	    } catch (IOException e) {}
-	    connection = null;
+	    // a partly sent event would also break the ones after it
+	    if (buffer.hasRemaining()) drop(channel);
 	}
     }
 
+    // the content must not contain line breaks, which would end the event
+    private static ByteBuffer event(byte[] content, int offset, int length)
+    {
+	ByteBuffer event = ByteBuffer.allocate(length + 8);
+	event.put(EVENT_START).put(content, offset, length).put(EVENT_END);
+	event.flip();
+	return event;
+    }
+
     public void reply(String content) throws IOException
+    {
+	byte[] bytes = content.getBytes();
+	reply(bytes, 0, bytes.length);
+    }
+
+    public void reply(byte[] content, int offset, int length) throws IOException
     {
 	if (connection == null)
 	    throw new NoConnectionPendingException();
-	OutputStream out = connection.getOutputStream();
-	String date = ZonedDateTime.now(ZoneId.of("GMT")).format(
-								 DateTimeFormatter.RFC_1123_DATE_TIME);
-	String header = "HTTP/1.1 200 OK\r\n";
-	header += "Content-Length: " + content.length() + "\r\n";
-	header += "Cache-Control: no-cache, no-store\r\n";
-	header += "Date: " + date + "\r\n\r\n";
+	boolean ok = false;
 	try {
-	    out.write(header.getBytes());
-	    out.write(content.getBytes());
+	    write(header(length));
+	    write(ByteBuffer.wrap(content, offset, length));
+	    ok = true;
 	} finally {
-	    try {
-		connection.close();
-	    } catch (IOException e) {}
-	    connection = null;
+	    finish(ok);
 	}
     }
 }
@@ -0,0 +1,71 @@
+package scout.sim;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs every call directly on the simulation thread, for trusted players. Nothing is
+ * enforced: a call that takes longer than its timeout still returns its result, and the
+ * overrun is reported once it is over.
+ */
+class InlineInvoker implements Invoker {
+
+	private final String name;
+	private long calls = 0;
+	private long overruns = 0;
+
+	InlineInvoker(String name)
+	{
+		this.name = name;
+	}
+
+	public <T> T call(Callable <T> task, long timeout) throws Exception
+	{
+		if (task == null || timeout < 0)
+			throw new IllegalArgumentException();
+		++calls;
+		long start = System.nanoTime();
+		try {
+			return task.call();
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (elapsed > timeout * 1000000L) {
+				++overruns;
+				System.err.println("Player " + name + " took " + elapsed / 1000000 + " ms, over its budget of " + timeout + " ms");
+			}
+		}
+	}
+
+	public boolean isBusy()
+	{
+		return false;
+	}
+
+	public long getCalls()
+	{
+		return calls;
+	}
+
+	public long getHandoffNanos()
+	{
+		return 0;
+	}
+
+	public long getMaxHandoffNanos()
+	{
+		return 0;
+	}
+
+	public long getOverruns()
+	{
+		return overruns;
+	}
+
+	public long getForfeits()
+	{
+		return 0;
+	}
+
+	public void close()
+	{
+	}
+}
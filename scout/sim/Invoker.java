@@ -0,0 +1,54 @@
+package scout.sim;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs player code on behalf of the simulator. The simulator keeps one invoker per scout
+ * and calls it for every init, move and communicate.
+ */
+interface Invoker {
+
+	/**
+	 * Runs the task and returns its result.
+	 * @throws java.util.concurrent.TimeoutException if the task did not finish within timeout milliseconds
+	 * @throws java.util.concurrent.RejectedExecutionException if isBusy(), the call is forfeited without running
+	 * @throws Exception whatever the task threw
+	 */
+	<T> T call(Callable <T> task, long timeout) throws Exception;
+
+	/**
+	 * @return true while a call that timed out is still running. The player object is still in
+	 *         use by it, so no other code of the player may run until it finishes
+	 */
+	boolean isBusy();
+
+	/**
+	 * @return number of calls that reached the player code
+	 */
+	long getCalls();
+
+	/**
+	 * @return total time between handing a call over and the player code starting to run it, in nanoseconds
+	 */
+	long getHandoffNanos();
+
+	/**
+	 * @return longest single handoff, in nanoseconds
+	 */
+	long getMaxHandoffNanos();
+
+	/**
+	 * @return number of calls that went over their timeout
+	 */
+	long getOverruns();
+
+	/**
+	 * @return number of calls refused because a call that timed out was still running
+	 */
+	long getForfeits();
+
+	/**
+	 * Stops the threads of the invoker. Calls still running are abandoned.
+	 */
+	void close();
+}
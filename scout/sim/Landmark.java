@@ -4,7 +4,7 @@ public class Landmark extends CellObject {
 
     private final Point location;
     public Landmark(int id, int x, int y) {
-        super("L" + id);
+        super(Kind.LANDMARK, id);
         location = new Point(x,y);
     }
 
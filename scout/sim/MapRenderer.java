@@ -0,0 +1,90 @@
+package scout.sim;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders the (n+2)x(n+2) maps printed in verbose mode. A map is given as bitmaps indexed like
+ * the grid, x * (n + 2) + y, one per symbol; a cell set in several of them shows the first one.
+ * Every map is built in a buffer reused between maps and written in one call, and can also be
+ * saved as an image, a PGM or, for files ending in .png, a PNG.
+ */
+final class MapRenderer {
+    private final int side;
+    // one row of text per x, with a line break after each one
+    private byte[] text;
+    // one byte per cell, the grey level of the image
+    private final byte[] pixels;
+
+    MapRenderer(int n) {
+        side = n + 2;
+        text = new byte[side * (side + 1) + 1];
+        pixels = new byte[side * side];
+    }
+
+    /**
+    * Prints the title, if it is not null, then the map and a blank line.
+    * @param symbols one per bitmap, then the symbol of the cells in none of them
+    */
+    void print(PrintStream out, String title, String symbols, BitSet... layers) {
+        byte[] heading = title == null ? new byte[0] : (title + "\n").getBytes(StandardCharsets.UTF_8);
+        int length = heading.length + side * (side + 1) + 1;
+        if (length > text.length) text = new byte[length];
+        System.arraycopy(heading, 0, text, 0, heading.length);
+        int start = heading.length;
+        byte none = (byte) symbols.charAt(layers.length);
+        for (int x = 0; x < side; ++x) {
+            int row = start + x * (side + 1);
+            Arrays.fill(text, row, row + side, none);
+            text[row + side] = '\n';
+        }
+        text[length - 1] = '\n';
+        // the first bitmap is written last, so that it wins
+        for (int l = layers.length - 1; l >= 0; --l) {
+            byte symbol = (byte) symbols.charAt(l);
+            BitSet cells = layers[l];
+            for (int cell = cells.nextSetBit(0); cell >= 0 && cell < side * side; cell = cells.nextSetBit(cell + 1)) {
+                text[start + cell + cell / side] = symbol;
+            }
+        }
+        out.write(text, 0, length);
+        out.flush();
+    }
+
+    /**
+    * Saves the map as an image with one pixel per cell: cells in the first bitmap are black,
+    * the next ones lighter and cells in none of them white.
+    */
+    void write(String file, BitSet... layers) throws IOException {
+        Arrays.fill(pixels, (byte) 255);
+        for (int l = layers.length - 1; l >= 0; --l) {
+            byte grey = (byte) (l * 255 / layers.length);
+            BitSet cells = layers[l];
+            for (int cell = cells.nextSetBit(0); cell >= 0 && cell < pixels.length; cell = cells.nextSetBit(cell + 1)) {
+                pixels[cell] = grey;
+            }
+        }
+        if (file.endsWith(".png")) {
+            BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            // rows of the image are x, like the printed map
+            System.arraycopy(pixels, 0, data, 0, pixels.length);
+            if (!ImageIO.write(image, "png", new File(file)))
+                throw new IOException("No PNG writer");
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(("P5\n" + side + " " + side + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(pixels);
+        }
+    }
+}
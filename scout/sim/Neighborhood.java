@@ -0,0 +1,243 @@
+package scout.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-only view of the 3 x 3 cells around a scout, indexed like nearbyIds:
+ * (i,j) is the cell at offset (i-1, j-1) and (1,1) is the scout's own cell.
+ * The simulator reuses one view per scout, so it is only valid during the call
+ * it was passed to. None of the queries allocate or look at ID strings, except toNearbyIds().
+ *
+ * The view also caches what the scout observed: the list form built by toNearbyIds() and the
+ * objects on the scout's own cell are kept until one of the cells they were built from changes,
+ * so communicate and move in the same turn share them. Both are read-only, changing them throws
+ * UnsupportedOperationException instead of corrupting what the next call observes.
+ *
+ * A view can also wrap lists in the nearbyIds form, see of(), so that a player written against
+ * the view can implement the list-based methods by calling the ones taking a view.
+ */
+public final class Neighborhood {
+    private final Grid grid;
+    // the lists wrapped by of(), null for a view of the grid
+    private final ArrayList<ArrayList<ArrayList<String>>> ids;
+    private int x, y;
+    private int center = -1;
+    // cached observations and the grid clock when they were built, -1 if there is none
+    private ArrayList<ArrayList<ArrayList<String>>> nearbyIds;
+    private int nearbyIdsCenter = -1, nearbyIdsClock;
+    private final List<CellObject> objects = new ArrayList<>();
+    private final List<CellObject> readOnlyObjects = Collections.unmodifiableList(objects);
+    private int objectsCenter = -1, objectsClock;
+
+    Neighborhood(Grid grid) {
+        this.grid = grid;
+        this.ids = null;
+    }
+
+    private Neighborhood(ArrayList<ArrayList<ArrayList<String>>> ids) {
+        this.grid = null;
+        this.ids = ids;
+    }
+
+    /**
+    * @return a view of lists in the nearbyIds form, kinds are taken from the ID prefixes
+    */
+    public static Neighborhood of(ArrayList<ArrayList<ArrayList<String>>> nearbyIds) {
+        return new Neighborhood(nearbyIds);
+    }
+
+    // the IDs on (i,j) of a view made by of(), null if it is off the board
+    private List<String> ids(int i, int j) {
+        if (i < 0 || i > 2 || j < 0 || j > 2)
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is not in the 3 x 3 neighborhood");
+        return ids.get(i).get(j);
+    }
+
+    void center(int cell) {
+        center = cell;
+        x = grid.cellX(cell);
+        y = grid.cellY(cell);
+    }
+
+    private int cell(int i, int j) {
+        if (i < 0 || i > 2 || j < 0 || j > 2)
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is not in the 3 x 3 neighborhood");
+        return grid.cellIndex(x + i - 1, y + j - 1);
+    }
+
+    /**
+    * @return true if (i,j) is off the board, i.e. nearbyIds.get(i).get(j) would be null
+    */
+    public boolean isOffBoard(int i, int j) {
+        if (ids != null) return ids(i, j) == null;
+        return cell(i, j) < 0;
+    }
+
+    /**
+    * @return the number of objects on (i,j), 0 if it is off the board
+    */
+    public int size(int i, int j) {
+        if (ids != null) return ids(i, j) == null ? 0 : ids(i, j).size();
+        int cell = cell(i, j);
+        if (cell < 0) return 0;
+        int size = 0;
+        for (int obj = grid.first(cell); obj >= 0; obj = grid.next(obj)) ++size;
+        return size;
+    }
+
+    /**
+    * @return the ID of the k-th object on (i,j)
+    */
+    public String getID(int i, int j, int k) {
+        if (ids != null) {
+            if (k >= 0 && k < size(i, j)) return ids(i, j).get(k);
+            throw new IndexOutOfBoundsException("No object " + k + " on (" + i + ", " + j + ")");
+        }
+        int cell = cell(i, j);
+        if (cell >= 0) {
+            int n = 0;
+            for (int obj = grid.first(cell); obj >= 0; obj = grid.next(obj)) {
+                if (n++ == k) return grid.object(obj).getID();
+            }
+        }
+        throw new IndexOutOfBoundsException("No object " + k + " on (" + i + ", " + j + ")");
+    }
+
+    /**
+    * @return the kind of the k-th object on (i,j)
+    */
+    public CellObject.Kind getKind(int i, int j, int k) {
+        if (ids != null) return CellObject.Kind.of(getID(i, j, k));
+        int cell = cell(i, j);
+        if (cell >= 0) {
+            int n = 0;
+            for (int obj = grid.first(cell); obj >= 0; obj = grid.next(obj)) {
+                if (n++ == k) return grid.object(obj).getKind();
+            }
+        }
+        throw new IndexOutOfBoundsException("No object " + k + " on (" + i + ", " + j + ")");
+    }
+
+    /**
+    * @return true if there is an object of the given kind on (i,j), false if there is none or it is off the board
+    */
+    public boolean hasKind(int i, int j, CellObject.Kind kind) {
+        if (ids != null) {
+            for (int k = 0; k < size(i, j); ++k) {
+                if (getKind(i, j, k) == kind) return true;
+            }
+            return false;
+        }
+        int cell = cell(i, j);
+        if (cell < 0) return false;
+        for (int obj = grid.first(cell); obj >= 0; obj = grid.next(obj)) {
+            if (grid.object(obj).getKind() == kind) return true;
+        }
+        return false;
+    }
+
+    public boolean hasEnemy(int i, int j) {
+        return hasKind(i, j, CellObject.Kind.ENEMY);
+    }
+
+    public boolean hasLandmark(int i, int j) {
+        return hasKind(i, j, CellObject.Kind.LANDMARK);
+    }
+
+    /**
+    * The view in the list form passed to the original move/communicate. The lists are built
+    * once and shared until a cell in the neighborhood changes, so they are read-only.
+    */
+    public ArrayList<ArrayList<ArrayList<String>>> toNearbyIds() {
+        if (ids != null) return ids;
+        if (nearbyIdsCenter != center || changedSince(nearbyIdsClock, true)) {
+            nearbyIds = buildNearbyIds();
+            nearbyIdsCenter = center;
+            nearbyIdsClock = grid.clock();
+        }
+        return nearbyIds;
+    }
+
+    /**
+    * @return the objects on the scout's own cell, refreshed only when the cell has changed
+    */
+    List<CellObject> objects() {
+        if (objectsCenter != center || changedSince(objectsClock, false)) {
+            grid.copyCell(center, objects);
+            objectsCenter = center;
+            objectsClock = grid.clock();
+        }
+        return readOnlyObjects;
+    }
+
+    private boolean changedSince(int clock, boolean all) {
+        if (!all) return grid.stamp(center) > clock;
+        for (int i = 0; i < 3; ++i) {
+            for (int j = 0; j < 3; ++j) {
+                int cell = cell(i, j);
+                if (cell >= 0 && grid.stamp(cell) > clock) return true;
+            }
+        }
+        return false;
+    }
+
+    ArrayList<ArrayList<ArrayList<String>>> buildNearbyIds() {
+        ArrayList<ArrayList<ArrayList<String>>> nearbyIds = new ArrayList<>(3);
+        for (int i = 0; i < 3; ++i) {
+            ArrayList<ArrayList<String>> row = new ArrayList<>(3);
+            for (int j = 0; j < 3; ++j) {
+                int cell = cell(i, j);
+                if (cell < 0) {
+                    row.add(null);
+                    continue;
+                }
+                ArrayList<String> ids = new ArrayList<>();
+                for (int obj = grid.first(cell); obj >= 0; obj = grid.next(obj)) {
+                    ids.add(grid.object(obj).getID());
+                }
+                row.add(new ReadOnlyList<>(ids));
+            }
+            nearbyIds.add(new ReadOnlyList<>(row));
+        }
+        return new ReadOnlyList<>(nearbyIds);
+    }
+
+    /**
+    * An ArrayList that cannot be changed once built, nearbyIds has to be made of ArrayLists.
+    * The iterators and sub lists of ArrayList go through the methods below.
+    */
+    private static final class ReadOnlyList<E> extends ArrayList<E> {
+        ReadOnlyList(Collection<? extends E> elements) {
+            super(elements);
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("The observation lists are shared and read-only");
+        }
+
+        public boolean add(E e) { throw readOnly(); }
+        public void add(int index, E e) { throw readOnly(); }
+        public boolean addAll(Collection<? extends E> c) { throw readOnly(); }
+        public boolean addAll(int index, Collection<? extends E> c) { throw readOnly(); }
+        public E set(int index, E e) { throw readOnly(); }
+        public E remove(int index) { throw readOnly(); }
+        public boolean remove(Object o) { throw readOnly(); }
+        public boolean removeAll(Collection<?> c) { throw readOnly(); }
+        public boolean retainAll(Collection<?> c) { throw readOnly(); }
+        public boolean removeIf(Predicate<? super E> filter) { throw readOnly(); }
+        public void replaceAll(UnaryOperator<E> operator) { throw readOnly(); }
+        public void sort(Comparator<? super E> c) { throw readOnly(); }
+        public void clear() { throw readOnly(); }
+        protected void removeRange(int from, int to) { throw readOnly(); }
+
+        public List<E> subList(int from, int to) {
+            return Collections.unmodifiableList(super.subList(from, to));
+        }
+    }
+}
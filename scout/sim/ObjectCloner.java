@@ -1,40 +1,300 @@
 package scout.sim;
 import java.io.*;
+import java.lang.reflect.*;
 import java.util.*;
-import java.awt.*;
+import java.util.concurrent.ConcurrentHashMap;
+import sun.reflect.ReflectionFactory;
 public class ObjectCloner
 {
    // so that nobody can accidentally create an ObjectCloner object
    private ObjectCloner(){}
-   // returns a deep copy of an object
+
+   // how to copy the objects of a class, worked out once per class
+   private static final Map<Class<?>, Plan> plans = new ConcurrentHashMap<>();
+
+   // buffer reused by the serialization fallback, one per thread
+   private static final ThreadLocal<ByteArrayOutputStream> buffers = new ThreadLocal<ByteArrayOutputStream>()
+   {
+      protected ByteArrayOutputStream initialValue()
+      {
+         return new ByteArrayOutputStream();
+      }
+   };
+
+   // classes that are never modified, so a copy can share them
+   private static final Set<Class<?>> immutables = new HashSet<Class<?>>(Arrays.asList(
+         String.class, Boolean.class, Character.class, Byte.class, Short.class,
+         Integer.class, Long.class, Float.class, Double.class, Class.class));
+
+   // collections rebuilt element by element instead of through their private fields
+   private static final Set<Class<?>> collections = new HashSet<Class<?>>(Arrays.asList(
+         ArrayList.class, LinkedList.class, ArrayDeque.class, HashSet.class, LinkedHashSet.class));
+   private static final Set<Class<?>> maps = new HashSet<Class<?>>(Arrays.asList(
+         HashMap.class, LinkedHashMap.class));
+
+   // thrown when part of the object graph can only be copied by serialization
+   private static class Unsupported extends Exception
+   {
+      Unsupported() { super(null, null, false, false); }
+   }
+
+   private static abstract class Plan
+   {
+      abstract Object copy(Object old, Map<Object, Object> copies) throws Exception;
+   }
+
+   // returns a deep copy of an object, with the same result as serializing and deserializing it
    static public Object deepCopy(Object oldObj) throws Exception
    {
-      ObjectOutputStream oos = null;
-      ObjectInputStream ois = null;
+      if (oldObj == null) return null;
       try
       {
-         ByteArrayOutputStream bos = 
-               new ByteArrayOutputStream(); // A
-         oos = new ObjectOutputStream(bos); // B
-         // serialize and pass the object
-         oos.writeObject(oldObj);   // C
-         oos.flush();               // D
-         ByteArrayInputStream bin = 
-               new ByteArrayInputStream(bos.toByteArray()); // E
-         ois = new ObjectInputStream(bin);                  // F
-         // return the new object
-         return ois.readObject(); // G
+         return copy(oldObj, new IdentityHashMap<Object, Object>());
+      }
+      catch (Unsupported e)
+      {
+         // copy the whole graph by serialization, so that shared references are kept
+         return serialCopy(oldObj);
+      }
+   }
+
+   private static Object copy(Object old, Map<Object, Object> copies) throws Exception
+   {
+      if (old == null) return null;
+      Object copy = copies.get(old);
+      if (copy != null) return copy;
+      return plan(old.getClass()).copy(old, copies);
+   }
+
+   private static Plan plan(Class<?> cls) throws Unsupported
+   {
+      Plan plan = plans.get(cls);
+      if (plan == null)
+      {
+         plan = makePlan(cls);
+         plans.put(cls, plan);
+      }
+      if (plan == UNSUPPORTED) throw new Unsupported();
+      return plan;
+   }
+
+   private static final Plan UNSUPPORTED = new Plan()
+   {
+      Object copy(Object old, Map<Object, Object> copies) throws Exception
+      {
+         throw new Unsupported();
+      }
+   };
+
+   private static final Plan SHARE = new Plan()
+   {
+      Object copy(Object old, Map<Object, Object> copies)
+      {
+         return old;
+      }
+   };
+
+   private static Plan makePlan(Class<?> cls)
+   {
+      if (immutables.contains(cls) || cls.isEnum() || (cls.getSuperclass() != null && cls.getSuperclass().isEnum()))
+         return SHARE;
+      if (cls.isArray())
+         return arrayPlan(cls);
+      if (collections.contains(cls))
+         return collectionPlan(cls);
+      if (maps.contains(cls))
+         return mapPlan(cls);
+      try
+      {
+         return fieldPlan(cls);
+      }
+      catch (Exception e)
+      {
+         return UNSUPPORTED;
       }
-      catch(Exception e)
+   }
+
+   private static Plan arrayPlan(final Class<?> cls)
+   {
+      final Class<?> component = cls.getComponentType();
+      if (component.isPrimitive())
+         return new Plan()
+         {
+            Object copy(Object old, Map<Object, Object> copies)
+            {
+               int length = Array.getLength(old);
+               Object copy = Array.newInstance(component, length);
+               System.arraycopy(old, 0, copy, 0, length);
+               copies.put(old, copy);
+               return copy;
+            }
+         };
+      return new Plan()
+      {
+         Object copy(Object old, Map<Object, Object> copies) throws Exception
+         {
+            Object[] from = (Object[]) old;
+            Object[] copy = (Object[]) Array.newInstance(component, from.length);
+            copies.put(old, copy);
+            for (int i = 0; i < from.length; ++i)
+               copy[i] = ObjectCloner.copy(from[i], copies);
+            return copy;
+         }
+      };
+   }
+
+   private static Plan collectionPlan(Class<?> cls)
+   {
+      final Constructor<?> constructor;
+      try
+      {
+         constructor = cls.getConstructor();
+      }
+      catch (NoSuchMethodException e)
+      {
+         return UNSUPPORTED;
+      }
+      return new Plan()
+      {
+         @SuppressWarnings("unchecked")
+         Object copy(Object old, Map<Object, Object> copies) throws Exception
+         {
+            Collection<Object> copy = (Collection<Object>) constructor.newInstance();
+            copies.put(old, copy);
+            for (Object element : (Collection<?>) old)
+               copy.add(ObjectCloner.copy(element, copies));
+            return copy;
+         }
+      };
+   }
+
+   private static Plan mapPlan(Class<?> cls)
+   {
+      final Constructor<?> constructor;
+      try
+      {
+         constructor = cls.getConstructor();
+      }
+      catch (NoSuchMethodException e)
+      {
+         return UNSUPPORTED;
+      }
+      return new Plan()
+      {
+         @SuppressWarnings("unchecked")
+         Object copy(Object old, Map<Object, Object> copies) throws Exception
+         {
+            Map<Object, Object> copy = (Map<Object, Object>) constructor.newInstance();
+            copies.put(old, copy);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) old).entrySet())
+               copy.put(ObjectCloner.copy(entry.getKey(), copies), ObjectCloner.copy(entry.getValue(), copies));
+            return copy;
+         }
+      };
+   }
+
+   // copies the serializable fields one by one, for plain classes that serialize by default;
+   // the others are copied by serialization
+   private static Plan fieldPlan(Class<?> cls) throws Exception
+   {
+      if (!Serializable.class.isAssignableFrom(cls) || Externalizable.class.isAssignableFrom(cls)
+            || cls.isRecord() || cls.isHidden() || Proxy.isProxyClass(cls)
+            || cls.getName().startsWith("java.") || cls.getName().startsWith("javax."))
+         return UNSUPPORTED;
+      final List<Field> fields = new ArrayList<Field>();
+      // serialization leaves transient fields at their default value, whatever the constructor set
+      final List<Field> transients = new ArrayList<Field>();
+      Class<?> c = cls;
+      for (; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass())
       {
-         System.out.println("Exception in ObjectCloner = " + e);
-         throw(e);
+         if (hasCustomSerialization(c)) return UNSUPPORTED;
+         for (Field field : c.getDeclaredFields())
+         {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers)) continue;
+            field.setAccessible(true);
+            if (Modifier.isTransient(modifiers)) transients.add(field);
+            else fields.add(field);
+         }
       }
-      finally
+      // serialization would fail on a first non serializable superclass without a usable no-arg constructor
+      Class<?> base = c == null ? Object.class : c;
+      Constructor<?> parent = base.getDeclaredConstructor();
+      int access = parent.getModifiers();
+      if (Modifier.isPrivate(access)
+            || (!Modifier.isPublic(access) && !Modifier.isProtected(access) && base.getPackage() != cls.getPackage()))
+         return UNSUPPORTED;
+      // like serialization, allocates the class and only runs that superclass's constructor
+      final Constructor<?> constructor = ReflectionFactory.getReflectionFactory().newConstructorForSerialization(cls, parent);
+      return new Plan()
       {
-         oos.close();
-         ois.close();
+         Object copy(Object old, Map<Object, Object> copies) throws Exception
+         {
+            Object copy;
+            try
+            {
+               copy = constructor.newInstance();
+            }
+            catch (InvocationTargetException e)
+            {
+               throw new Unsupported();
+            }
+            copies.put(old, copy);
+            for (Field field : transients)
+            {
+               Class<?> type = field.getType();
+               if (!type.isPrimitive())
+                  field.set(copy, null);
+               else if (type == boolean.class)
+                  field.setBoolean(copy, false);
+               else if (type == char.class)
+                  field.setChar(copy, (char) 0);
+               else
+                  field.set(copy, (byte) 0);
+            }
+            for (Field field : fields)
+            {
+               Class<?> type = field.getType();
+               if (type == int.class)
+                  field.setInt(copy, field.getInt(old));
+               else if (type == double.class)
+                  field.setDouble(copy, field.getDouble(old));
+               else if (type == boolean.class)
+                  field.setBoolean(copy, field.getBoolean(old));
+               else if (type == long.class)
+                  field.setLong(copy, field.getLong(old));
+               else if (type.isPrimitive())
+                  field.set(copy, field.get(old));
+               else
+                  field.set(copy, ObjectCloner.copy(field.get(old), copies));
+            }
+            return copy;
+         }
+      };
+   }
+
+   private static boolean hasCustomSerialization(Class<?> cls)
+   {
+      for (String name : new String[] {"writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve"})
+         for (Method method : cls.getDeclaredMethods())
+            if (method.getName().equals(name)) return true;
+      return false;
+   }
+
+   private static Object serialCopy(Object oldObj) throws Exception
+   {
+      ByteArrayOutputStream bos = buffers.get();
+      bos.reset();
+      // the callers report the exceptions
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+      {
+         // serialize and pass the object
+         oos.writeObject(oldObj);
+      }
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())))
+      {
+         // return the new object
+         return ois.readObject();
       }
    }
-   
-}
\ No newline at end of file
+}
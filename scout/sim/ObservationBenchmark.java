@@ -0,0 +1,85 @@
+package scout.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares building every scout's observation from scratch in both phases of a turn with the
+ * observations cached by Neighborhood. Only the simulator side is measured, no player code runs.
+ *
+ *   java scout.sim.ObservationBenchmark [n] [s] [turns]
+ */
+public class ObservationBenchmark {
+
+    private static class Scout extends CellObject {
+        Scout(int id) {
+            super(Kind.SCOUT, id);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int s = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int turns = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        for (int round = 0; round < 3; ++round) {
+            long fresh = run(n, s, turns, false);
+            long cached = run(n, s, turns, true);
+            System.out.printf("n=%d s=%d turns=%d: fresh %.1f ms, cached %.1f ms, %.2fx%n",
+                    n, s, turns, fresh / 1e6, cached / 1e6, fresh * 1.0 / cached);
+        }
+    }
+
+    /**
+    * Every turn each scout observes for communicate, a third of them move to a neighbouring
+    * cell, and a third observe again for move, like scouts whose decision is due.
+    * @return nanoseconds spent observing
+    */
+    private static long run(int n, int s, int turns, boolean cached) throws Exception {
+        Random random = new Random(42);
+        Grid grid = new Grid(n);
+        List<CellObject> scouts = new ArrayList<>();
+        List<Point> locations = new ArrayList<>();
+        for (int i = 0; i < s; ++i) {
+            scouts.add(new Scout(i));
+            locations.add(new Point(1 + random.nextInt(n), 1 + random.nextInt(n)));
+        }
+        grid.addAllCellObjects(scouts, locations);
+        Neighborhood[] neighborhoods = new Neighborhood[s];
+        List<List<CellObject>> objects = new ArrayList<>();
+        for (int i = 0; i < s; ++i) {
+            neighborhoods[i] = new Neighborhood(grid);
+            objects.add(new ArrayList<>());
+        }
+
+        long elapsed = 0;
+        long sink = 0;
+        for (int t = 0; t < turns; ++t) {
+            long start = System.nanoTime();
+            for (int i = 0; i < s; ++i) sink += observe(grid, neighborhoods[i], objects.get(i), i, cached);
+            elapsed += System.nanoTime() - start;
+
+            for (int i = 0; i < s; ++i) {
+                if (random.nextInt(3) != 0) continue;
+                int cell = grid.cellOf(i);
+                int x = Math.min(n, Math.max(1, grid.cellX(cell) + random.nextInt(3) - 1));
+                int y = Math.min(n, Math.max(1, grid.cellY(cell) + random.nextInt(3) - 1));
+                grid.update(i, grid.cellIndex(x, y));
+            }
+
+            start = System.nanoTime();
+            for (int i = 0; i < s; i += 3) sink += observe(grid, neighborhoods[i], objects.get(i), i, cached);
+            elapsed += System.nanoTime() - start;
+        }
+        if (sink == 42) System.out.println();
+        return elapsed;
+    }
+
+    private static int observe(Grid grid, Neighborhood neighborhood, List<CellObject> objects, int obj, boolean cached) {
+        neighborhood.center(grid.cellOf(obj));
+        if (cached)
+            return neighborhood.toNearbyIds().size() + neighborhood.objects().size();
+        grid.copyCell(grid.cellOf(obj), objects);
+        return neighborhood.buildNearbyIds().size() + objects.size();
+    }
+}
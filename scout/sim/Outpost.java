@@ -1,56 +1,228 @@
 package scout.sim;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 public class Outpost extends CellObject {
+    public static final int UNKNOWN = 0;
+    public static final int ENEMY = 1;
+    public static final int SAFE = 2;
+
+    /**
+    * Data stored in an outpost at some point. Snapshots are shared by every reader,
+    * so treat the data as read-only.
+    */
+    public static final class Snapshot implements Serializable {
+        private final long version;
+        private final Object data;
+
+        private Snapshot(long version, Object data) {
+            this.version = version;
+            this.data = data;
+        }
+
+        /**
+        * @return how many times setData had been called when this snapshot was taken
+        */
+        public long getVersion() {
+            return version;
+        }
+
+        public Object getData() {
+            return data;
+        }
+    }
+
     private final Point location;
-    private Object data;
-    private final List<List<Integer>> enemyMap;
+    private volatile Snapshot snapshot;
+    private final int side;
+    // one byte per cell, indexed x * (n + 2) + y
+    private final byte[] enemyMap;
+    private transient List<List<Integer>> enemyMapView;
+    // reports that changed a cell, cell * 4 + status, only kept while a trace is recorded
+    private transient int[] journal;
+    private transient int journalSize;
 
     public Outpost(int id, int n, int x, int y) {
-        super("O" + id);
-        data = null;
-        enemyMap = new ArrayList<>();
-        for(int i = 0; i < n+2; ++i) {
-            List<Integer> row = new ArrayList<>();;
-            for(int j = 0 ; j < n + 2; ++ j) {
-                row.add(0);
-            }
-            enemyMap.add(row);
-        }
+        super(Kind.OUTPOST, id);
+        snapshot = new Snapshot(0, null);
+        side = n + 2;
+        enemyMap = new byte[side * side];
         location = new Point(x,y);
     }
     
     /**
-    * Store anything you want!
+    * Store anything you want! A copy is taken now, so later changes to ob are not seen
+    * by other players until setData is called again.
+    * @return false if ob could not be copied, e.g. because it is not serializable.
+    *         The data stored before is then kept and the version does not change
     */
-    public void setData(Object ob) {
-        data = ob;
+    public boolean setData(Object ob) {
+        Object copy;
+        try {
+            copy = ObjectCloner.deepCopy(ob);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+        synchronized (this) {
+            snapshot = new Snapshot(snapshot.getVersion() + 1, copy);
+        }
+        return true;
     }
 
     public Point getLocation() {
         return location;
     }
 
+    /**
+    * @return a private copy of the stored data, which you may modify
+    */
     public Object getData() {
         try {
-            return ObjectCloner.deepCopy(data);
+            return ObjectCloner.deepCopy(snapshot.getData());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
 
+    /**
+    * @return the stored data without copying it, see Snapshot
+    */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+    * @return the version of the stored data, 0 if setData was never called
+    */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    /**
+    * Cheap check to poll an outpost every turn.
+    * @return true if setData was called since the snapshot with the given version
+    */
+    public boolean hasChangedSince(long version) {
+        return snapshot.getVersion() != version;
+    }
+
+    /**
+    * @return the index of (x,y) in the bitmaps taken by addEnemyLocations and addSafeLocations
+    */
+    public int cellIndex(int x, int y) {
+        if (x < 0 || x >= side || y < 0 || y >= side)
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is off the board");
+        return x * side + y;
+    }
+
     public void addEnemyLocation(Point p) {
-        enemyMap.get(p.x).set(p.y, 1);
+        set(cellIndex(p.x, p.y), ENEMY);
     }
 
     public void addSafeLocation(Point p) {
-        enemyMap.get(p.x).set(p.y, 2);
+        set(cellIndex(p.x, p.y), SAFE);
     }
 
+    /**
+    * Reports every cell set in the bitmap as an enemy, bit x * (n + 2) + y being cell (x,y).
+    */
+    public void addEnemyLocations(BitSet cells) {
+        addLocations(cells, ENEMY);
+    }
+
+    /**
+    * Reports every cell set in the bitmap as safe, bit x * (n + 2) + y being cell (x,y).
+    */
+    public void addSafeLocations(BitSet cells) {
+        addLocations(cells, SAFE);
+    }
+
+    private void addLocations(BitSet cells, int status) {
+        if (cells.length() > enemyMap.length)
+            throw new IndexOutOfBoundsException("Bitmap is larger than the board");
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+            set(cell, status);
+        }
+    }
+
+    private void set(int cell, int status) {
+        if (journal != null && enemyMap[cell] != status) {
+            if (journalSize == journal.length) journal = Arrays.copyOf(journal, journalSize * 2);
+            journal[journalSize++] = cell * 4 + status;
+        }
+        enemyMap[cell] = (byte) status;
+    }
+
+    /**
+    * Starts keeping the reports that change a cell, for the trace.
+    */
+    void keepJournal() {
+        if (journal == null) journal = new int[64];
+    }
+
+    int journalSize() {
+        return journalSize;
+    }
+
+    /**
+    * @return the i-th change since the journal was last cleared, cell * 4 + status
+    */
+    int journalEntry(int i) {
+        return journal[i];
+    }
+
+    void clearJournal() {
+        journalSize = 0;
+    }
+
+    /**
+    * @return UNKNOWN, ENEMY or SAFE
+    */
+    public int getStatus(int x, int y) {
+        return enemyMap[cellIndex(x, y)];
+    }
+
+    /**
+    * @return the cells reported with the given status, bit x * (n + 2) + y being cell (x,y)
+    */
+    BitSet getCells(int status) {
+        BitSet cells = new BitSet(enemyMap.length);
+        for (int cell = 0; cell < enemyMap.length; ++cell) {
+            if (enemyMap[cell] == status) cells.set(cell);
+        }
+        return cells;
+    }
+
+    /**
+    * @return a read-only view of the reports, get(x).get(y) is the status of (x,y)
+    */
     public List<List<Integer>> getEnemyMap() {
-        return enemyMap;
+        if (enemyMapView == null) {
+            enemyMapView = new AbstractList<List<Integer>>() {
+                public List<Integer> get(final int i) {
+                    if (i < 0 || i >= side) throw new IndexOutOfBoundsException("Row " + i);
+                    return new AbstractList<Integer>() {
+                        public Integer get(int j) {
+                            return getStatus(i, j);
+                        }
+
+                        public int size() {
+                            return side;
+                        }
+                    };
+                }
+
+                public int size() {
+                    return side;
+                }
+            };
+        }
+        return enemyMapView;
     }
 }
@@ -9,7 +9,7 @@ abstract public class Player extends CellObject {
     * better to use init instead of constructor, don't modify ID or simulator will error
     */
     public Player(int id) {
-        super("P" + id);
+        super(Kind.SCOUT, id);
     }
 
     /**
@@ -37,6 +37,7 @@ abstract public class Player extends CellObject {
     *       The (x,y) coordinate of Landmarks can be retrieved using ((Landmark)object).getLocation();
     *       Information can be stored in or retrieved from Outposts using the public methods of scout.sim.Outpost
     *       Communication between players takes place using custom methods, since you have access to the player object.
+    *       nearbyIds and concurrentObjects are shared with the other calls made before the board changes and read-only.
     * @return (x,y) direction, x in {-1,0,1} y in {-1,0,1}
     */
     public abstract Point move(
@@ -44,6 +45,16 @@ abstract public class Player extends CellObject {
             //objects on your location
             List<CellObject> concurrentObjects);
 
+    /**
+    * Same as move(nearbyIds, concurrentObjects), with the neighbourhood given as a read-only
+    * view that does not allocate or parse IDs. This is the one the simulator calls: by default
+    * it passes neighborhood.toNearbyIds() to move(nearbyIds, concurrentObjects), override it
+    * to skip the lists. Neighborhood.of(nearbyIds) wraps the lists back into a view.
+    */
+    public Point move(Neighborhood neighborhood, List<CellObject> concurrentObjects) {
+        return move(neighborhood.toNearbyIds(), concurrentObjects);
+    }
+
     /**
     * Called every turn as opposed to every 2/3/6/9 turns.
     * @param nearbyIds 3 x 3 grid of list of neighbouring IDs. 
@@ -58,6 +69,33 @@ abstract public class Player extends CellObject {
             List<CellObject> concurrentObjects
     );
 
+    /**
+    * Same as communicate(nearbyIds, concurrentObjects), with the neighbourhood given as a
+    * read-only view. This is the one the simulator calls, by default with the lists.
+    */
+    public void communicate(Neighborhood neighborhood, List<CellObject> concurrentObjects) {
+        communicate(neighborhood.toNearbyIds(), concurrentObjects);
+    }
+
+    /**
+    * Asked at the start of every turn. Return false if communicate has nothing to do this turn
+    * and it will not be called. When no scout needs to communicate and the gui is off, the
+    * simulator skips straight to the next turn where a move finishes or a scout has to move.
+    * Only asked if it is overridden, with the same timeout as move; if it fails, communicate is called.
+    */
+    public boolean needsCommunicate() {
+        return true;
+    }
+
+    /**
+    * Asked after every move. Return true once the scout has finished: from then on it only
+    * stands still and nothing it does changes the outposts. When every scout is done the game
+    * ends early and is scored with the outposts as they are.
+    */
+    public boolean isDone() {
+        return false;
+    }
+
 
     /**
     * Called when the actual move finishes. Update your player's x and y here!
@@ -0,0 +1,76 @@
+package scout.sim;
+
+import java.io.IOException;
+
+/**
+ * Shows a recorded trace in the browser without running any player code. The page polls
+ * data.txt as it does for a live game and gets the next turn every time. The query string
+ * controls the replay: turn=T jumps to turn T and speed=K moves K turns ahead per frame.
+ */
+class Replay {
+    private final String file;
+    private final long guiRefresh;
+
+    Replay(String file, long guiRefresh) {
+        this.file = file;
+        this.guiRefresh = guiRefresh;
+    }
+
+    /**
+    * Serves the replay until the process is stopped.
+    */
+    void run() throws IOException {
+        try (TraceReader reader = new TraceReader(file)) {
+            System.err.println("Replaying " + reader.getTurnsPlayed() + " turns of " + reader.getPlayer()
+                    + " with seed " + reader.getSeed());
+            int[] scoutIndices = new int[reader.getScouts()];
+            for (int k = 0; k < scoutIndices.length; ++k) scoutIndices[k] = k;
+            FrameEncoder frames = new FrameEncoder(reader.getPlayer(), reader.getBoardSize(), scoutIndices,
+                    reader.getEnemyLocations(), reader.getLandmarkLocations());
+
+            HTTPServer server = Simulator.startServer();
+            boolean first = true;
+            for (;;) {
+                String path = Simulator.request(server);
+                int form = FrameEncoder.form(path);
+                if (form < 0) {
+                    if (!Simulator.replyStatic(server, path)) reply(server, "");
+                    continue;
+                }
+                // replays are polled, so that the page sets the pace
+                if (form == FrameEncoder.STREAM) {
+                    reply(server, "");
+                    continue;
+                }
+                if (form != FrameEncoder.STATIC) {
+                    int speed = 1, turn = -1;
+                    int query = path.indexOf('?');
+                    if (query >= 0) {
+                        for (String param : path.substring(query + 1).split("&")) {
+                            try {
+                                if (param.startsWith("speed=")) speed = Integer.parseInt(param.substring(6));
+                                else if (param.startsWith("turn=")) turn = Integer.parseInt(param.substring(5));
+                            } catch (NumberFormatException e) {
+                                System.err.println("Invalid replay parameter: " + param);
+                            }
+                        }
+                    }
+                    if (turn >= 0) reader.seek(turn);
+                    else if (!first) reader.seek(reader.getTurn() + speed);
+                    first = false;
+                    frames.setScouts(reader.getScoutLocations());
+                    frames.setTurn(reader.getTurns() - reader.getTurn() - 1, guiRefresh, 0);
+                }
+                Simulator.replyFrame(server, frames, form, FrameEncoder.since(path));
+            }
+        }
+    }
+
+    private static void reply(HTTPServer server, String content) {
+        try {
+            server.reply(content);
+        } catch (IOException e) {
+            System.err.println("HTTP dynamic reply error: " + e.getMessage());
+        }
+    }
+}
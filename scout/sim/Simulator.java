@@ -10,72 +10,217 @@ import java.io.IOException;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.IntConsumer;
 
 public class Simulator {
-  private static String group, landmark_mapper_name, enemy_mapper_name;
-  private static String root = "scout";
-  private static long seed;
-  private static int n, t, s, e, fps;
-  private static long gui_refresh;
-  private static boolean gui_enabled, log;
-  private static int repeats = 1;
-  private static long play_timeout = 1000;
-  private static long init_timeout = 1000;
+  private static final String root = "scout";
+  // classes are compiled and loaded once per JVM, keyed by fully qualified name
+  private static final Map<String, Class<?>> loaded_classes = new HashMap<>();
+
+  private final GameConfig config;
+  private final String group;
+  private final long gui_refresh;
+  private final boolean gui_enabled, log;
+  private final long play_timeout;
+  private final long init_timeout;
+  private final int phase_threads;
+  private final String maps;
+
+  /**
+   * Command line options that are not part of a single game.
+   */
+  private static class Options {
+    String group, landmark_mapper_name, enemy_mapper_name;
+    long seed;
+    boolean seed_set;
+    int n = -1, t = -1, s = -1, e = -1;
+    long gui_refresh;
+    boolean gui_enabled, log, trusted;
+    int repeats = 1;
+    int parallel = 1;
+    int phase_threads = 1;
+    String trace, replay, maps;
+    GameConfig.FramePolicy frame_policy = GameConfig.FramePolicy.BLOCK;
+    int frame_buffer = 1;
+  }
+
+  public Simulator(GameConfig config) {
+    this.config = config;
+    group = config.getPlayer();
+    gui_refresh = config.getGuiRefresh();
+    gui_enabled = config.isGuiEnabled();
+    log = config.isVerbose();
+    play_timeout = config.getPlayTimeout();
+    init_timeout = config.getInitTimeout();
+    phase_threads = config.getPhaseThreads();
+    maps = config.getMaps();
+  }
 
   public static void main(String[] args) throws Exception {
       JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
       if(compiler == null) throw new IOException(":(");
-    n = t = s = e = -1;
-    group = landmark_mapper_name = enemy_mapper_name = null;
-    parseArgs(args);
-    if(n == -1 || t == -1 || s == -1 || e == -1 || group == null ||
-            landmark_mapper_name == null || enemy_mapper_name == null) {
+    Options options = parseArgs(args);
+    if(options.replay != null) {
+      new Replay(options.replay, options.gui_refresh).run();
+      return;
+    }
+    if(options.n == -1 || options.t == -1 || options.s == -1 || options.e == -1 || options.group == null ||
+            options.landmark_mapper_name == null || options.enemy_mapper_name == null) {
       throw new IllegalArgumentException("Missing arguments");
     }
-
-    Class<Player> player_class = loadPlayer(group);
-    Class<LandmarkMapper> landmark_mapper_class = loadLandmarkMapper(landmark_mapper_name);
-    Class<EnemyMapper> enemy_mapper_class = loadEnemyMapper(enemy_mapper_name);
-    Timer timer = new Timer();
-    timer.start();
+    long base_seed = options.seed_set ? options.seed : System.currentTimeMillis();
+    GameConfig config = new GameConfig(options.group, options.landmark_mapper_name, options.enemy_mapper_name,
+            options.n, options.s, options.e, options.t, base_seed)
+            .setVerbose(options.log)
+            .setGui(options.gui_enabled, options.gui_refresh)
+            .setFrames(options.frame_policy, options.frame_buffer)
+            .setTrusted(options.trusted)
+            .setPhaseThreads(options.phase_threads)
+            .setTrace(options.trace)
+            .setMaps(options.maps);
+
+    int repeats = options.repeats;
+    // every game serves its own page, which is only stopped by stopping the process
+    if(options.gui_enabled && repeats > 1) throw new IllegalArgumentException("--gui cannot be combined with more than one repeat");
     int total_score = 0;
-    for(int r = 0 ; r < repeats; ++ r) {
-      seed = System.currentTimeMillis();
-      Player[] scouts = new Player[s];
-      for(int i = 0 ; i < s; ++ i) {
-        scouts[i] = player_class.getDeclaredConstructor(int.class).newInstance(i);
+    if(options.parallel <= 1) {
+      for(int r = 0 ; r < repeats; ++ r) {
+        int score = new Simulator(repeatConfig(config, base_seed, r, repeats)).play().getScore();
+        if(repeats == 1)
+          System.out.println("score: " + score);
+        total_score += score;
+      }
+    } else {
+      if(options.gui_enabled) throw new IllegalArgumentException("--parallel cannot be combined with --gui");
+      ExecutorService pool = Executors.newFixedThreadPool(options.parallel);
+      List<Future<GameResult>> results = new ArrayList<>();
+      for(int r = 0 ; r < repeats; ++ r) {
+        final GameConfig repeat_config = repeatConfig(config, base_seed, r, repeats);
+        results.add(pool.submit(new Callable<GameResult>() {
+          public GameResult call() throws Exception {
+            return new Simulator(repeat_config).play();
+          }
+        }));
+      }
+      pool.shutdown();
+      for(Future<GameResult> result : results) {
+        total_score += result.get().getScore();
       }
-      LandmarkMapper landmarkMapper = landmark_mapper_class.newInstance();
-      EnemyMapper enemyMapper = enemy_mapper_class.newInstance();
-      int score = new Simulator().play(n, t, s, e, timer, scouts, landmarkMapper, enemyMapper, seed);
       if(repeats == 1)
-        System.out.println("score: " + score);
-      total_score += score;
+        System.out.println("score: " + total_score);
     }
     if(repeats != 1)
       System.out.println("Average score: "+total_score*1.0/repeats);
-    System.exit(0);
+    // with the gui the server thread keeps the page up until the process is stopped
+    if(!options.gui_enabled) System.exit(0);
   }
 
-  private int play(int n, int t, int s, int e, Timer timer, Player[] scouts, LandmarkMapper landmarkMapper, EnemyMapper enemyMapper, Long seed) throws Exception {
-    HTTPServer server = null;
-    
-
-    if (gui_enabled) {
-      server = new HTTPServer();
-      if (!Desktop.isDesktopSupported())
-        System.err.println("Desktop operations not supported");
-      else if (!Desktop.getDesktop().isSupported(Desktop.Action.BROWSE))
-        System.err.println("Desktop browse operation not supported");
-      else {
-        try {
-          Desktop.getDesktop().browse(new URI("http://localhost:" + server.port()));
-        } catch (URISyntaxException exc) {
-          exc.printStackTrace();
+  /**
+   * Configuration of the r-th repeat. When there are several repeats each one is traced
+   * into its own file, named after the trace file with the repeat appended.
+   */
+  private static GameConfig repeatConfig(GameConfig config, long base_seed, int r, int repeats) {
+    GameConfig repeat_config = config.withSeed(repeatSeed(base_seed, r));
+    if(repeats > 1 && config.getTrace() != null)
+      repeat_config.setTrace(config.getTrace() + "." + r);
+    if(repeats > 1 && config.getMaps() != null)
+      repeat_config.setMaps(mapFile(config.getMaps(), String.valueOf(r)));
+    return repeat_config;
+  }
+
+  /**
+   * Name of one of the map images: the --maps file with the name of the map inserted
+   * before its extension, .pgm if it has none.
+   */
+  private static String mapFile(String maps, String name) {
+    int dot = maps.lastIndexOf('.');
+    if(dot <= maps.lastIndexOf(File.separatorChar)) return maps + "-" + name + ".pgm";
+    return maps.substring(0, dot) + "-" + name + maps.substring(dot);
+  }
+
+  /**
+   * Seed of the r-th repeat. The first repeat uses the base seed itself so that
+   * a single game can be reproduced with -S, later repeats are derived from it.
+   */
+  static long repeatSeed(long base_seed, int r) {
+    return base_seed + 1000003L * r;
+  }
+
+  /**
+   * Plays the configured game. Every call builds its own grid, invokers, scouts
+   * and mappers, so several simulators can play at the same time in one JVM.
+   */
+  public GameResult play() throws Exception {
+    Class<Player> player_class = loadPlayer(log, config.getPlayer());
+    Class<LandmarkMapper> landmark_mapper_class = loadLandmarkMapper(log, config.getLandmarkMapper());
+    Class<EnemyMapper> enemy_mapper_class = loadEnemyMapper(log, config.getEnemyMapper());
+    int s = config.getScouts();
+    Player[] scouts = new Player[s];
+    for(int i = 0 ; i < s; ++ i) {
+      scouts[i] = player_class.getDeclaredConstructor(int.class).newInstance(i);
+    }
+    LandmarkMapper landmarkMapper = landmark_mapper_class.getDeclaredConstructor().newInstance();
+    EnemyMapper enemyMapper = enemy_mapper_class.getDeclaredConstructor().newInstance();
+    Invoker[] invokers = new Invoker[s];
+    for(int i = 0 ; i < s; ++ i) {
+      invokers[i] = config.isTrusted() ? new InlineInvoker(scouts[i].getID()) : new WorkerInvoker(scouts[i].getID());
+    }
+    ExecutorService phase_pool = phase_threads > 1 ? Executors.newFixedThreadPool(phase_threads) : null;
+    TraceWriter trace = config.getTrace() != null ? new TraceWriter(config.getTrace()) : null;
+    FrameRing ring = gui_enabled ? new FrameRing(s, config.getFramePolicy(), config.getFrameBuffer()) : null;
+    try {
+      return play(config.getBoardSize(), config.getTurns(), s, config.getEnemies(), invokers, phase_pool, trace, ring, scouts,
+              landmarkMapper, enemyMapper, config.getSeed());
+    } finally {
+      // the page keeps showing the last frame that was published
+      if(ring != null) ring.finish();
+      if(trace != null) trace.close();
+      if(phase_pool != null) phase_pool.shutdownNow();
+      for(Invoker invoker : invokers) {
+        invoker.close();
+      }
+    }
+  }
+
+  /**
+   * Runs task for every scout. Without a pool the scouts run one after another. With a pool the
+   * scouts are grouped by the cell they are on: the scouts of a cell still run one after another
+   * in scout order, because they can call each other, while different cells run at the same time.
+   * The grid must not change until this returns.
+   */
+  private static void runByCell(ExecutorService pool, Grid grid, int[] scoutIndex, final IntConsumer task) throws Exception {
+    if(pool == null) {
+      for(int k = 0 ; k < scoutIndex.length; ++k) {
+        task.accept(k);
+      }
+      return;
+    }
+    Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+    for(int k = 0 ; k < scoutIndex.length; ++k) {
+      groups.computeIfAbsent(grid.cellOf(scoutIndex[k]), cell -> new ArrayList<>()).add(k);
+    }
+    List<Future<Void>> done = new ArrayList<>();
+    for(final List<Integer> group : groups.values()) {
+      done.add(pool.submit(new Callable<Void>() {
+        public Void call() {
+          for(int k : group) {
+            task.accept(k);
+          }
+          return null;
         }
+      }));
+    }
+    for(Future<Void> f : done) {
+      try {
+        f.get();
+      } catch (ExecutionException ex) {
+        if(ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+        throw ex;
       }
     }
+  }
 
+  private GameResult play(int n, int t, int s, int e, Invoker[] invokers, ExecutorService phase_pool, TraceWriter trace, FrameRing ring, Player[] scouts, LandmarkMapper landmarkMapper, EnemyMapper enemyMapper, long seed) throws Exception {
     Grid grid = new Grid(n);
     //add scouts randomly
     grid.addAllCellObjects(Arrays.asList(scouts), new ScoutMapper().getLocations(n, s, new Random(seed)));
@@ -107,6 +252,11 @@ public class Simulator {
       enemies.add(new Enemy(enemyID));
     }
     grid.addAllCellObjects(enemies, enemyLocations);
+    // enemies never move, so whether a cell has one is looked up in a bitmap over cell indices
+    BitSet enemyCells = new BitSet(grid.cellIndex(n + 1, n + 1) + 1);
+    for(Point p : enemyLocations) {
+      enemyCells.set(grid.cellIndex(p.x, p.y));
+    }
 
     //add outposts
     List<CellObject> outposts = new ArrayList<>();
@@ -119,319 +269,297 @@ public class Simulator {
       outposts.add(new Outpost(i, n, outpostLocations.get(i).x, outpostLocations.get(i).y));
     }
     grid.addAllCellObjects(outposts, outpostLocations);
-
-    //init
-    for(Player scout: scouts) {
-      try {
-        final int ss=s, nn=n, tt = t;
-        timer.call(new Callable<Void>() {
-          public Void call() throws Exception {
-            scout.init(scout.getID(), ss, nn, tt, landmarkLocations);
-            return null;
-          }
-        }, init_timeout);
-      } catch (Exception ex) {
-        System.err.println("Exception calling init of player: " + scout.getID());
-        ex.printStackTrace();
+    if(trace != null) trace.header(group, n, s, t, seed, grid, landmarkLocations, enemyLocations, outposts);
+    if(gui_enabled) {
+      int[] scoutIndices = new int[s];
+      for(int i = 0 ; i < s; ++i) {
+        scoutIndices[i] = scouts[i].getIndex();
       }
-      
+      // the page is served from its own thread, frames reach it through the ring
+      FrameEncoder frames = new FrameEncoder(group, n, scoutIndices, enemyLocations, landmarkLocations);
+      new FrameServer(startServer(), frames, ring).start();
     }
 
-
-    Map<String, Point> nextLocation = new HashMap<>();
-    Map<String, Integer> turnsToWait = new HashMap<>();
-    for(Player scout : scouts) {
-      turnsToWait.put(scout.getID(), -1);
+    // dense grid index of every scout and the cell it is moving to
+    int[] scoutIndex = new int[s];
+    int[] nextCell = new int[s];
+    // reusable views handed to the scouts every turn, they keep what the scout observed
+    // until a cell around it changes, so communicate and move share one observation
+    Neighborhood[] neighborhoods = new Neighborhood[s];
+    for(int i = 0 ; i < s; ++i) {
+      scoutIndex[i] = grid.indexOf(scouts[i]);
+      neighborhoods[i] = new Neighborhood(grid);
     }
-    Map<String, CellObject> copies = new HashMap<>();
-    while(t > 0) {
-      if(t%100 == 1)
-      if (log) System.out.println("turns left: " + t);
-      copies.clear();
 
-      boolean[] communicated = new boolean[s];
-      for(Player scout : scouts) {
-        if(turnsToWait.containsKey(scout.getID())) {
-
-          ArrayList<ArrayList<ArrayList<String>>> nearbyIDs = new ArrayList<>();
-          for(int i = 0 ; i < 3; ++i) {
-            ArrayList<ArrayList<String>> row = new ArrayList<>();
-            for(int j = 0 ; j < 3 ; ++ j) {
-              row.add(new ArrayList<>());
+    //init
+    final int ss = s, nn = n, tt = t;
+    runByCell(phase_pool, grid, scoutIndex, new IntConsumer() {
+      public void accept(int k) {
+        final Player scout = scouts[k];
+        try {
+          invokers[k].call(new Callable<Void>() {
+            public Void call() throws Exception {
+              scout.init(scout.getID(), ss, nn, tt, landmarkLocations);
+              return null;
             }
-            nearbyIDs.add(row);
-          }
-          Point currentLocation = grid.location.get(scout.getID());
-          int[] x = {-1,0,1,-1,0,1,-1,0,1};
-          int[] y = {-1,-1,-1,0,0,0,1,1,1};
-          for(int i = 0 ; i < 9 ; ++ i) {
-            Point nbr = grid.getLocationWithOffset(currentLocation, new Point(x[i], y[i]));
-            if(nbr != null && grid.getCell(nbr) != null) {
-              for(CellObject obj : grid.getCell(nbr)) {
-                nearbyIDs.get(1 + x[i]).get(1 + y[i]).add(obj.getID());
-              }
-            } else {
-              nearbyIDs.get(1 + x[i]).set(1 + y[i], null);
+          }, init_timeout);
+        } catch (RejectedExecutionException ex) {
+          // forfeited, the scout is still running a call that timed out
+        } catch (Exception ex) {
+          System.err.println("Exception calling init of player: " + scout.getID());
+          ex.printStackTrace();
+        }
+      }
+    });
+
+    // the turn every scout decides its next move, and the turn its current move finishes,
+    // -1 while it is not moving. A move decided on turn d that costs c turns finishes on
+    // turn d + c - 1, and the next decision is on turn d + c.
+    int[] decisionTurn = new int[s];
+    int[] arrivalTurn = new int[s];
+    Arrays.fill(arrivalTurn, -1);
+    // pending decisions and arrivals keyed by turn * s + scout, so they come out by turn and then by scout
+    PriorityQueue<Long> events = new PriorityQueue<>();
+    for(int k = 0 ; k < s; ++k) {
+      events.add((long) k);
+    }
+    boolean[] communicating = new boolean[s];
+    // players that keep the default needsCommunicate always communicate, so they are not asked
+    final boolean asks = s > 0 && scouts[0].getClass().getMethod("needsCommunicate").getDeclaringClass() != Player.class;
+    // scouts that declared they are done, the game ends when all of them have
+    boolean[] done = new boolean[s];
+    int doneCount = 0;
+    Map<String, CellObject> copies = new ConcurrentHashMap<>();
+    IntConsumer communicate = new IntConsumer() {
+      public void accept(int k) {
+        if(!communicating[k]) return;
+        final Player scout = scouts[k];
+        int currentCell = grid.cellOf(scoutIndex[k]);
+        final Neighborhood neighborhood = neighborhoods[k];
+        neighborhood.center(currentCell);
+        final List<CellObject> concurrentObjects = neighborhood.objects();
+        try {
+          invokers[k].call(new Callable<Void>() {
+            public Void call() throws Exception {
+              
+              scout.communicate(
+                neighborhood,
+                copyWithClonedPlayers(
+                  concurrentObjects,
+                  scout,
+                  copies
+                )
+              );
+              return null;
             }
-          }
+          }, play_timeout);
+        } catch (RejectedExecutionException ex) {
+          // forfeited, the scout is still running a call that timed out
+        } catch (Exception ex) {
+          System.err.println("Exception calling communicate of player: " + scout.getID());
+          ex.printStackTrace();
+        }
+      }
+    };
+    int turn = 0;
+    while(t > 0) {
+      boolean anyCommunicating = false;
+      for(int k = 0 ; k < s; ++k) {
+        communicating[k] = true;
+        if(asks) {
+          final Player scout = scouts[k];
           try {
-            timer.call(new Callable<Void>() {
-              public Void call() throws Exception {
-                
-                scout.communicate(
-                  nearbyIDs,
-                  copyWithClonedPlayers(
-                    grid.getCell(
-                      currentLocation
-                    ),
-                    scout,
-                    copies
-                  )
-                );
-                return null;
+            communicating[k] = invokers[k].call(new Callable<Boolean>() {
+              public Boolean call() throws Exception {
+                return scout.needsCommunicate();
               }
             }, play_timeout);
+          } catch (RejectedExecutionException ex) {
+            // forfeited, the scout is still running a call that timed out
           } catch (Exception ex) {
-            System.err.println("Exception calling communicate of player: " + scout.getID());
+            System.err.println("Exception calling needsCommunicate of player: " + scout.getID());
             ex.printStackTrace();
           }
-
-          int turns = turnsToWait.get(scout.getID());
-          if(turns == 0) {
-            grid.update(scout, nextLocation.get(scout.getID()));
-            scout.moveFinished();
-            //turnsToWait.put(scout.getID(), turns);
-          } else if(turns > 0 ){
-            //turnsToWait.put(scout.getID(), turns);
-          } else {
-          }
         }
+        anyCommunicating |= communicating[k];
       }
+      if(!anyCommunicating && !gui_enabled && !events.isEmpty()) {
+        // nothing happens before the next arrival or decision, so go straight to it
+        int skip = (int) Math.min(events.peek() / s - turn, t);
+        if(trace != null && skip > 0) trace.skip(skip);
+        turn += skip;
+        t -= skip;
+        if(t == 0) break;
+      }
+      if(trace != null) trace.beginTurn(turn, grid, scoutIndex, arrivalTurn, nextCell);
+      if(t%100 == 1)
+      if (log) System.out.println("turns left: " + t);
+      copies.clear();
 
-      List<Point> scoutLocations = new ArrayList<>();
-      for(Player scout: scouts) {
-        scoutLocations.add(grid.location.get(scout.getID()));
-        if (turnsToWait.containsKey(scout.getID())) {
-          int turns = turnsToWait.get(scout.getID());
-          if(turns >= 0) {
-            -- turns;
-            turnsToWait.put(scout.getID(), turns);
-          } else
-          if (turns < 0) {
-
-            ArrayList<ArrayList<ArrayList<String>>> nearbyIDs = new ArrayList<>();
-            for(int i = 0 ; i < 3; ++i) {
-              ArrayList<ArrayList<String>> row = new ArrayList<>();
-              for(int j = 0 ; j < 3 ; ++ j) {
-                row.add(new ArrayList<>());
-              }
-              nearbyIDs.add(row);
-            }
-            Point currentLocation = grid.location.get(scout.getID());
-            int[] x = {-1,0,1,-1,0,1,-1,0,1};
-            int[] y = {-1,-1,-1,0,0,0,1,1,1};
-            for(int i = 0 ; i < 9 ; ++ i) {
-              Point nbr = grid.getLocationWithOffset(currentLocation, new Point(x[i], y[i]));
-              if(nbr != null && grid.getCell(nbr) != null) {
-                for(CellObject obj : grid.getCell(nbr)) {
-                  nearbyIDs.get(1 + x[i]).get(1 + y[i]).add(obj.getID());
-                }
-              } else {
-                nearbyIDs.get(1 + x[i]).set(1 + y[i], null);
-              }
-            }
-            //System.out.println("actual: " + currentLocation.x + ", " + currentLocation.y);
-            // for(int i = 0; i < 3; ++i) {
-            //   for(int j = 0 ; j < 3; ++j) {
-            //     System.out.print(nearbyIDs.get(i).get(j) == null? "0":"1");
-            //   }
-            //   System.out.println();
-            // }
-            // System.out.println();
-            Point direction = null;
-            try {
-              direction = timer.call(new Callable<Point>() {
-                public Point call() throws Exception {
-                  return scout.move(
-                    nearbyIDs, 
-                    copyWithClonedPlayers(
-                      grid.getCell(
-                        currentLocation
-                      ),
-                      scout,
-                      copies
-                    )
-                  );
-                }
-              }, play_timeout);
-            } catch (Exception ex) {
-              System.err.println("Exception calling move of player: " + scout.getID());
-              ex.printStackTrace();
-            }
-            if(direction == null) {
-              direction = new Point(0,0);
-            }
-
-            if(!(direction.x <= 1 && direction.x >= -1 && direction.y >=-1 && direction.y <= 1)) throw new Exception("move returned illegal value");
-            Point next = grid.getLocationWithOffset(
-                    currentLocation,
-                    direction
-            );
-            if(next == null) {
-              System.err.println("trying to move to invalid location");
-              continue;
-            }
-            nextLocation.put(scout.getID(), next);
+      // in parallel mode every scout communicates with the board as it was at the start of
+      // the turn, and the moves that finish this turn are applied afterwards in scout order
+      if(phase_pool != null) runByCell(phase_pool, grid, scoutIndex, communicate);
+      for(int k = 0 ; k < s; ++k) {
+        if(phase_pool == null) communicate.accept(k);
+        if(arrivalTurn[k] == turn) {
+          grid.update(scoutIndex[k], nextCell[k]);
+          arrivalTurn[k] = -1;
+          // called directly, so only while no call that timed out is still using the player
+          if(!invokers[k].isBusy()) scouts[k].moveFinished();
+        }
+      }
 
-            boolean isNearEnemy = false;
-            for(CellObject obj : grid.getCell(currentLocation)) {
-              if (obj instanceof Enemy) {
-                isNearEnemy  = true;
-              }
-            }
-            for(CellObject obj : grid.getCell(next)) {
-              if (obj instanceof Enemy) {
-                isNearEnemy  = true;
-              }
+      if(gui_enabled) {
+        for(int k = 0 ; k < s; ++k) {
+          int cell = grid.cellOf(scoutIndex[k]);
+          ring.setScout(k, grid.cellX(cell), grid.cellY(cell));
+        }
+      }
+      // only the scouts whose decision is due are asked to move, arrivals are already done
+      while(!events.isEmpty() && events.peek() / s <= turn) {
+        final int k = (int) (events.poll() % s);
+        if(decisionTurn[k] != turn) continue;
+        final Player scout = scouts[k];
+
+        int currentCell = grid.cellOf(scoutIndex[k]);
+        Point currentLocation = new Point(grid.cellX(currentCell), grid.cellY(currentCell));
+        final Neighborhood neighborhood = neighborhoods[k];
+        neighborhood.center(currentCell);
+        final List<CellObject> concurrentObjects = neighborhood.objects();
+        Point direction = null;
+        try {
+          MoveResult result = invokers[k].call(new Callable<MoveResult>() {
+            public MoveResult call() throws Exception {
+              Point direction = scout.move(
+                neighborhood,
+                copyWithClonedPlayers(
+                  concurrentObjects,
+                  scout,
+                  copies
+                )
+              );
+              return new MoveResult(direction, scout.isDone());
             }
-            boolean isDiag = false;
-            if(direction.x != 0 && direction.y != 0) isDiag = true;
-            turns = 2;
-            if(isDiag) turns  = 3;
-            if(isNearEnemy) turns *= 3;
-            turns -= 2;
-            turnsToWait.put(scout.getID(), turns);
+          }, play_timeout);
+          direction = result.direction;
+          // set here, a call that timed out may still be running and must not write it
+          if(result.done && !done[k]) {
+            done[k] = true;
+            ++doneCount;
           }
+        } catch (RejectedExecutionException ex) {
+          // forfeited, the scout is still running a call that timed out and stands still
+        } catch (Exception ex) {
+          System.err.println("Exception calling move of player: " + scout.getID());
+          ex.printStackTrace();
+        }
+        if(direction == null) {
+          direction = new Point(0,0);
+        }
+
+        if(!(direction.x <= 1 && direction.x >= -1 && direction.y >=-1 && direction.y <= 1)) throw new Exception("move returned illegal value");
+        Point next = grid.getLocationWithOffset(
+                currentLocation,
+                direction
+        );
+        if(next == null) {
+          System.err.println("trying to move to invalid location");
+          if(trace != null) trace.move(k, direction.x, direction.y, 0);
+          decisionTurn[k] = turn + 1;
+          events.add((long) decisionTurn[k] * s + k);
+          continue;
         }
+
+        nextCell[k] = grid.cellIndex(next.x, next.y);
+        boolean isNearEnemy = enemyCells.get(currentCell) || enemyCells.get(nextCell[k]);
+        boolean isDiag = false;
+        if(direction.x != 0 && direction.y != 0) isDiag = true;
+        int turns = 2;
+        if(isDiag) turns  = 3;
+        if(isNearEnemy) turns *= 3;
+        if(trace != null) trace.move(k, direction.x, direction.y, turns);
+        arrivalTurn[k] = turn + turns - 1;
+        decisionTurn[k] = turn + turns;
+        events.add((long) arrivalTurn[k] * s + k);
+        events.add((long) decisionTurn[k] * s + k);
       }
 
+      if(trace != null) trace.endTurn();
+      ++turn;
       --t;
-      if(gui_enabled)
-        gui(
-          server, 
-          state(
-            group, 
-            n, 
-            t, 
-            scouts,
-            scoutLocations,
-            enemyLocations,
-            landmarkLocations,
-            gui_refresh,
-            0
-          )
-        );
+      if(gui_enabled) ring.publish(t, gui_refresh, 0);
+      if(s > 0 && doneCount == s) {
+        if (log) System.out.println("all scouts done with " + t + " turns left");
+        break;
+      }
     }
 
+    if(trace != null) trace.end(turn);
     int score = 0;
 
     if(log) {
-      System.out.println("Enemy Map (X is enemy, 0 is not):");
-      for(int i = 0 ; i <= n + 1 ; ++ i) {
-        for (int j = 0; j <=n + 1; ++j) {
-          List<CellObject> objs = grid.getCell(i, j);
-          boolean hasEnemy = false;
-          for (CellObject obj : objs) {
-            if (obj instanceof Enemy) {
-              hasEnemy = true;
-            }
-          }
-          if(hasEnemy)
-            System.out.print("X");
-          else
-            System.out.print("0");
-        }
-        System.out.println();
-      }
-      System.out.println();
-    }
-
-    if (log) {
-      System.out.println("Player Map (player: 1, not player: 0");
-      for(int i = 0 ; i <= n + 1 ; ++ i) {
-        for (int j = 0; j <=n + 1; ++j) {
-          List<CellObject> objs = grid.getCell(i, j);
-          boolean hasEnemy = false;
-          for (CellObject obj : objs) {
-            if (obj instanceof Player) {
-              hasEnemy = true;
-            }
-          }
-          if(hasEnemy)
-            System.out.print("1");
-          else
-            System.out.print("0");
-        }
-        System.out.println();
+      long calls = 0, handoffNanos = 0, maxHandoffNanos = 0, overruns = 0, forfeits = 0;
+      for(Invoker invoker : invokers) {
+        calls += invoker.getCalls();
+        handoffNanos += invoker.getHandoffNanos();
+        maxHandoffNanos = Math.max(maxHandoffNanos, invoker.getMaxHandoffNanos());
+        overruns += invoker.getOverruns();
+        forfeits += invoker.getForfeits();
       }
-      System.out.println();
+      System.out.printf("Handoff: %d calls, %.1f us average, %.1f us max, %d over budget, %d forfeited%n",
+              calls, calls == 0 ? 0.0 : handoffNanos / 1000.0 / calls, maxHandoffNanos / 1000.0, overruns, forfeits);
     }
 
-    if(log) {
-      System.out.println("Landmark Map, Landmark: ], Not landmark: 0");
-      for(int i = 0 ; i <= n + 1 ; ++ i) {
-        for (int j = 0; j <=n + 1; ++j) {
-          List<CellObject> objs = grid.getCell(i, j);
-          boolean hasEnemy = false;
-          for (CellObject obj : objs) {
-            if (obj instanceof Landmark) {
-              hasEnemy = true;
-            }
-          }
-          if(hasEnemy)
-            System.out.print("]");
-          else
-            System.out.print("0");
+    if(log || maps != null) {
+      MapRenderer renderer = new MapRenderer(n);
+      // bitmaps of the cells with scouts and landmarks, in one pass over the objects
+      BitSet scoutCells = new BitSet(), landmarkCells = new BitSet();
+      for(int obj = 0 ; obj < grid.objectCount(); ++obj) {
+        CellObject.Kind kind = grid.object(obj).getKind();
+        if(kind == CellObject.Kind.SCOUT) scoutCells.set(grid.cellOf(obj));
+        else if(kind == CellObject.Kind.LANDMARK) landmarkCells.set(grid.cellOf(obj));
+      }
+      if(log) {
+        renderer.print(System.out, "Enemy Map (X is enemy, 0 is not):", "X0", enemyCells);
+        renderer.print(System.out, "Player Map (player: 1, not player: 0", "10", scoutCells);
+        renderer.print(System.out, "Landmark Map, Landmark: ], Not landmark: 0", "]0", landmarkCells);
+        System.out.println("Outpost information(X: Enemy, -: Safe, 0: unknown:");
+        for(CellObject _outpostobj : outposts) {
+          Outpost outpost = (Outpost) _outpostobj;
+          renderer.print(System.out, null, "X-0", outpost.getCells(Outpost.ENEMY), outpost.getCells(Outpost.SAFE));
         }
-        System.out.println();
       }
-      System.out.println();
-    }
-
-    if(log) {
-      System.out.println("Outpost information(X: Enemy, -: Safe, 0: unknown:");
-
-      for(CellObject _outpostobj : outposts) {
-        List<List<Integer>> outpostMap = ((Outpost) _outpostobj).getEnemyMap();
-        for(int i = 0 ; i <= n + 1 ; ++ i) {
-          for (int j = 0; j <=n + 1; ++j) {
-            int sss = outpostMap.get(i).get(j);
-            String xxx;
-            if(sss == 1) xxx = "X";
-            else if(sss == 2) xxx = "-";
-            else xxx = "0";
-            System.out.print(xxx);
+      if(maps != null) {
+        // the game is scored even if the maps cannot be saved
+        try {
+          renderer.write(mapFile(maps, "enemy"), enemyCells);
+          renderer.write(mapFile(maps, "player"), scoutCells);
+          renderer.write(mapFile(maps, "landmark"), landmarkCells);
+          for(int o = 0 ; o < outposts.size(); ++o) {
+            Outpost outpost = (Outpost) outposts.get(o);
+            renderer.write(mapFile(maps, "outpost" + o), outpost.getCells(Outpost.ENEMY), outpost.getCells(Outpost.SAFE));
           }
-          System.out.println();
+        } catch (IOException ex) {
+          System.err.println("Map write error: " + ex.getMessage());
         }
-        System.out.println();
       }
     }
 
-
     int[] enemies_discovered = new int[4];
     int[] safe_discovered = new int[4];
     int[] mistakes = new int[4];
-    int enemies_missed = 0;
+    List<Point> missed_enemies = new ArrayList<>();
     for(int i = 1 ; i < n + 1 ; ++ i) {
       for (int j = 1; j < n + 1; ++j) {
-        List<CellObject> objs = grid.getCell(i, j);
-        boolean hasEnemy = false;
-        for (CellObject obj : objs) {
-          if (obj instanceof Enemy) {
-            hasEnemy = true;
-          }
-        }
+        boolean hasEnemy = enemyCells.get(grid.cellIndex(i, j));
         if(hasEnemy) {
         //  System.out.println(i + ", " + j +" has enemy");
         }
         boolean foundEnemy = false;
         for (int o = 0; o < 4; ++ o) {
           CellObject _outpostobj = outposts.get(o);
-          List<List<Integer>> outpostMap = ((Outpost) _outpostobj).getEnemyMap();
-          if(outpostMap.get(i).get(j)!=-1)
-         // System.out.println(i + ", " + j + " of " + _outpostobj.getID() + ": " + outpostMap.get(i).get(j));
-          if (outpostMap.get(i).get(j) == 1) {
+          int status = ((Outpost) _outpostobj).getStatus(i, j);
+          if (status == Outpost.ENEMY) {
             foundEnemy = true;
             if(hasEnemy) {
               score += 1000;
@@ -444,7 +572,7 @@ public class Simulator {
                 System.out.println("location: (" + i +", " +j + ") was incorrect");
               }
             }
-          } else if(outpostMap.get(i).get(j) == 2) {
+          } else if(status == Outpost.SAFE) {
             if(hasEnemy) {
               mistakes[o]++;
               System.out.println("location: (" + i +", " +j + ") was incorrect");
@@ -456,7 +584,7 @@ public class Simulator {
           }
         }
         if(!foundEnemy && hasEnemy) {
-          enemies_missed ++ ;
+          missed_enemies.add(new Point(i, j));
           score -= 5000;
         }
       }
@@ -468,32 +596,30 @@ public class Simulator {
         System.out.println("Mistakes by outpost "+i+": " + mistakes[i]);
         
       }
-      System.out.println("Enemies missed: " + enemies_missed);
-    }
-    List<Point> scoutLocations = new ArrayList<>();
-    for(Player scout: scouts) {
-      scoutLocations.add(grid.location.get(scout.getID()));
+      System.out.println("Enemies missed: " + missed_enemies.size());
     }
     if(gui_enabled) {
-      gui(
-        server, 
-        state(
-          group, 
-          n, 
-          t, 
-          scouts,
-          scoutLocations,
-          enemyLocations,
-          landmarkLocations,
-          gui_refresh,
-          score
-        )
-      );
-      for(;;);
-    }
-    if(server != null) server.close();
-    return score;
+      for(int k = 0 ; k < s; ++k) {
+        int cell = grid.cellOf(scoutIndex[k]);
+        ring.setScout(k, grid.cellX(cell), grid.cellY(cell));
+      }
+      ring.publish(t, gui_refresh, score);
+    }
+    return new GameResult(seed, score, turn, enemies_discovered, safe_discovered, mistakes, missed_enemies);
   }
+  /**
+   * What a call to move gave back, with whether the scout is done after it.
+   */
+  private static class MoveResult {
+    final Point direction;
+    final boolean done;
+
+    MoveResult(Point direction, boolean done) {
+      this.direction = direction;
+      this.done = done;
+    }
+  }
+
   private static List<CellObject> copyWithClonedPlayers (
     List<CellObject> list,
     Player scout,
@@ -502,7 +628,7 @@ public class Simulator {
     if(true) return list;
     for(int i = 0; i < list.size(); ++i) {
       String id  = list.get(i).getID();
-      if(id.charAt(0)=='P' && id!=scout.getID()) {
+      if(list.get(i).getKind() == CellObject.Kind.SCOUT && list.get(i) != scout) {
         if(copies.containsKey(id)) {
           list.set( i, copies.get(id));
         } else {
@@ -515,69 +641,111 @@ public class Simulator {
     return list;
   }
 
-  private static void parseArgs(String[] args) {
+  private static Options parseArgs(String[] args) {
+    Options options = new Options();
     for(int i = 0; i < args.length; ++i) {
 
       if (args[i].equals("-p") || args[i].equals("--player")) {
         if (i + 1 >= args.length) {
           throw new IllegalArgumentException("Missing player name");
         }
-        group = args[++i];
+        options.group = args[++i];
       } else if (args[i].equals("-m") || args[i].equals("--map")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing map name");
         }
-        landmark_mapper_name = args[++i];
+        options.landmark_mapper_name = args[++i];
       } else if (args[i].equals("-em") || args[i].equals("--emap")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing enemy map name");
         }
-        enemy_mapper_name = args[++i];
+        options.enemy_mapper_name = args[++i];
       } else if (args[i].equals("-s") || args[i].equals("--scouts")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing number of scouts");
         }
-        s = Integer.parseInt(args[++i]);
+        options.s = Integer.parseInt(args[++i]);
       } else if (args[i].equals("-n") || args[i].equals("--board")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing board size");
         }
-        n = Integer.parseInt(args[++i]);
+        options.n = Integer.parseInt(args[++i]);
       } else if (args[i].equals("-t") || args[i].equals("--time")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing time");
         }
-        t = Integer.parseInt(args[++i]);
+        options.t = Integer.parseInt(args[++i]);
       } else if (args[i].equals("-e") || args[i].equals("--enemies")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing enemies");
         }
-        e = Integer.parseInt(args[++i]);
+        options.e = Integer.parseInt(args[++i]);
       } else if (args[i].equals("-r") || args[i].equals("--repeats")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing repeats");
         }
-        repeats = Integer.parseInt(args[++i]);
+        options.repeats = Integer.parseInt(args[++i]);
       } else if (args[i].equals("-S") || args[i].equals("--seed")) {
         if (i + 1 >= args.length) {
           throw new IllegalArgumentException("Missing seed");
         }
-        seed = Long.parseLong(args[++i]);
-      }else if (args[i].equals("-f") || args[i].equals("--fps")) {
+        options.seed = Long.parseLong(args[++i]);
+        options.seed_set = true;
+      } else if (args[i].equals("--parallel")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing number of parallel games");
+        }
+        options.parallel = Integer.parseInt(args[++i]);
+        if (options.parallel <= 0) options.parallel = Runtime.getRuntime().availableProcessors();
+      } else if (args[i].equals("-f") || args[i].equals("--fps")) {
         if (i+1 >= args.length) {
           throw new IllegalArgumentException("Missing fps");
         }
         double gui_fps = Double.parseDouble(args[++i]);
-        gui_refresh = gui_fps > 0.0 ? (long) Math.round(1000.0 / gui_fps) : -1;
-        gui_enabled = true;
+        options.gui_refresh = gui_fps > 0.0 ? (long) Math.round(1000.0 / gui_fps) : -1;
+        options.gui_enabled = true;
       } else if (args[i].equals("--gui")) {
-        gui_enabled = true;
+        options.gui_enabled = true;
+      } else if (args[i].equals("--gui-frames")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing frame policy");
+        }
+        options.frame_policy = GameConfig.FramePolicy.valueOf(args[++i].toUpperCase());
+      } else if (args[i].equals("--gui-buffer")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing frame buffer size");
+        }
+        options.frame_buffer = Integer.parseInt(args[++i]);
       } else if (args[i].equals("--verbose")) {
-        log = true;
+        options.log = true;
+      } else if (args[i].equals("--trace")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing trace file");
+        }
+        options.trace = args[++i];
+      } else if (args[i].equals("--maps")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing map file");
+        }
+        options.maps = args[++i];
+      } else if (args[i].equals("--replay")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing trace file");
+        }
+        options.replay = args[++i];
+      } else if (args[i].equals("--trusted")) {
+        options.trusted = true;
+      } else if (args[i].equals("--phase-threads")) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing number of phase threads");
+        }
+        options.phase_threads = Integer.parseInt(args[++i]);
+        if (options.phase_threads <= 0) options.phase_threads = Runtime.getRuntime().availableProcessors();
       } else {
         throw new IllegalArgumentException("Unknown argument: " + args[i]);
       }
     }
+    return options;
   }
 
   private static long last_modified(Iterable <File> files) {
@@ -590,7 +758,10 @@ public class Simulator {
     return last_date;
   }
 
-  private static Class <Player> loadPlayer(String group) throws IOException, ReflectiveOperationException {
+  private static synchronized Class <Player> loadPlayer(boolean log, String group) throws IOException, ReflectiveOperationException {
+    @SuppressWarnings("unchecked")
+    Class <Player> cached = (Class <Player>) loaded_classes.get(root + "." + group + ".Player");
+    if (cached != null) return cached;
     String sep = File.separator;
     Set<File> player_files = directory(root + sep + group, ".java");
     File class_file = new File(root + sep + group + sep + "Player.class");
@@ -621,10 +792,14 @@ public class Simulator {
     Class raw_class = loader.loadClass(root + "." + group + ".Player");
     @SuppressWarnings("unchecked")
     Class <Player> player_class = raw_class;
+    loaded_classes.put(root + "." + group + ".Player", player_class);
     return player_class;
   }
 
-  private static Class <EnemyMapper> loadEnemyMapper(String mapper) throws IOException, ReflectiveOperationException {
+  private static synchronized Class <EnemyMapper> loadEnemyMapper(boolean log, String mapper) throws IOException, ReflectiveOperationException {
+    @SuppressWarnings("unchecked")
+    Class <EnemyMapper> cached = (Class <EnemyMapper>) loaded_classes.get(root + "." + mapper + ".EnemyMapper");
+    if (cached != null) return cached;
     String sep = File.separator;
     Set <File> sequencer_files = directory(root + sep + mapper, ".java");
     File class_file = new File(root + sep + mapper + sep + "EnemyMapper.class");
@@ -655,10 +830,14 @@ public class Simulator {
     Class raw_class = loader.loadClass(root + "." + mapper + ".EnemyMapper");
     @SuppressWarnings("unchecked")
     Class <EnemyMapper> mapper_class = raw_class;
+    loaded_classes.put(root + "." + mapper + ".EnemyMapper", mapper_class);
     return mapper_class;
   }
 
-  private static Class <LandmarkMapper> loadLandmarkMapper(String mapper) throws IOException, ReflectiveOperationException {
+  private static synchronized Class <LandmarkMapper> loadLandmarkMapper(boolean log, String mapper) throws IOException, ReflectiveOperationException {
+    @SuppressWarnings("unchecked")
+    Class <LandmarkMapper> cached = (Class <LandmarkMapper>) loaded_classes.get(root + "." + mapper + ".LandmarkMapper");
+    if (cached != null) return cached;
     String sep = File.separator;
     Set <File> sequencer_files = directory(root + sep + mapper, ".java");
     File class_file = new File(root + sep + mapper + sep + "LandmarkMapper.class");
@@ -689,6 +868,7 @@ public class Simulator {
     Class raw_class = loader.loadClass(root + "." + mapper + ".LandmarkMapper");
     @SuppressWarnings("unchecked")
     Class <LandmarkMapper> mapper_class = raw_class;
+    loaded_classes.put(root + "." + mapper + ".LandmarkMapper", mapper_class);
     return mapper_class;
   }
 
@@ -710,83 +890,84 @@ public class Simulator {
     return files;
   }
 
-  public static String state(
-    String group, 
-    int n, 
-    int turns_left, 
-    Player[] scouts,
-    List<Point> scoutLocations,
-    List<Point> enemyLocations,
-    List<Point> landmarkLocations,
-    long gui_refresh,
-    int score) {
-
-    String buffer = "";
-    buffer += group + ",";
-    buffer += n + ",";
-    buffer += turns_left + ",";
-    buffer += gui_refresh + ",";
-  
-    buffer += scoutLocations.size() + ",";
-    for(Point p : scoutLocations) {
-      buffer += p.y + ",";
-      buffer += p.x + ",";
-    }
-    
-    buffer += enemyLocations.size() + ",";
-    for(Point p : enemyLocations) {
-      buffer += p.y + ",";
-      buffer += p.x + ",";
-    }
+  // files the page needs, served from the sim directory
+  private static final String[] STATIC_FILES = {"webpage.html", "script.js", "favicon.ico", "apple-touch-icon.png"};
 
-    buffer += landmarkLocations.size() + ",";
-    for(Point p : landmarkLocations) {
-      buffer += p.y + ",";
-      buffer += p.x + ",";
-    }
+  private static File staticFile(String path) {
+    return new File(root + File.separator + "sim" + File.separator + path);
+  }
 
-    for(Player scout : scouts) {
-      buffer += scout.getID().substring(1) + ",";
+  /**
+   * Starts the GUI server with the static files already in memory and opens the page.
+   */
+  static HTTPServer startServer() throws IOException {
+    HTTPServer server = new HTTPServer();
+    for (String path : STATIC_FILES) {
+      File file = staticFile(path);
+      if (file.exists()) server.preload(file);
     }
-    buffer += score;
-    return buffer;
+    browse(server);
+    return server;
   }
 
-  public static void gui(HTTPServer server, String content) {
-    String path = null;
-    for (;;) {
-        // get request
-      for (;;)
-      try {
-        path = server.request();
-        break;
-      } catch (IOException e) {
-        System.err.println("HTTP request error: " + e.getMessage());
-      }
-        // dynamic content
-      if (path.equals("data.txt")) {
-        // send dynamic content
-        try {
-          server.reply(content);
-          return;
-        } catch (IOException e) {
-          System.err.println("HTTP dynamic reply error: " + e.getMessage());
-          continue;
-        }
-      }
-      // static content
-      if (path.equals("")) path = "webpage.html";
-      else if (!path.equals("favicon.ico") &&
-           !path.equals("apple-touch-icon.png") &&
-           !path.equals("script.js")) break;
-      // send file
-      File file = new File(root + File.separator + "sim"
-           + File.separator + path);
+  /**
+   * Opens the page served by the server in the default browser, if there is one.
+   */
+  static void browse(HTTPServer server) throws IOException {
+    if (!Desktop.isDesktopSupported())
+      System.err.println("Desktop operations not supported, open http://localhost:" + server.port());
+    else if (!Desktop.getDesktop().isSupported(Desktop.Action.BROWSE))
+      System.err.println("Desktop browse operation not supported, open http://localhost:" + server.port());
+    else {
       try {
-        server.reply(file);
-      } catch (IOException e) {
-        System.err.println("HTTP static reply error: " + e.getMessage());
+        Desktop.getDesktop().browse(new URI("http://localhost:" + server.port()));
+      } catch (URISyntaxException exc) {
+        exc.printStackTrace();
       }
     }
   }
+
+  /**
+   * @return false if the frame could not be sent
+   */
+  static boolean replyFrame(HTTPServer server, FrameEncoder frames, int form, int since) {
+    try {
+      int length = frames.encode(form, since);
+      server.reply(frames.buffer(form), 0, length);
+      return true;
+    } catch (IOException e) {
+      System.err.println("HTTP dynamic reply error: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Waits for the next request, retrying after errors.
+   * @return the requested path, with its query if it has one
+   */
+  static String request(HTTPServer server) {
+    for (;;)
+    try {
+      return server.request();
+    } catch (IOException e) {
+      System.err.println("HTTP request error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Sends one of the static files of the web page.
+   * @return false if the path is not one of them
+   */
+  static boolean replyStatic(HTTPServer server, String path) {
+    // static content
+    if (path.equals("")) path = STATIC_FILES[0];
+    else if (!Arrays.asList(STATIC_FILES).contains(path)) return false;
+    // send file
+    try {
+      server.reply(staticFile(path));
+    } catch (IOException e) {
+      System.err.println("HTTP static reply error: " + e.getMessage());
+    }
+    return true;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+package scout.sim;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays every combination of players, landmark mappers, enemy mappers and game parameters
+ * in a single JVM and writes one CSV row per game.
+ *
+ * Lists are comma separated ("g5,random") and numeric parameters also accept
+ * inclusive ranges with a step ("20:100:20").
+ */
+public class Tournament {
+
+    private static final String HEADER = "player,landmark_mapper,enemy_mapper,n,s,e,t,repeat,seed,score,"
+            + "enemies_discovered_0,enemies_discovered_1,enemies_discovered_2,enemies_discovered_3,"
+            + "safe_discovered_0,safe_discovered_1,safe_discovered_2,safe_discovered_3,"
+            + "mistakes_0,mistakes_1,mistakes_2,mistakes_3,enemies_missed,turns_played,millis,error";
+
+    private List<String> players, landmarkMappers, enemyMappers;
+    private List<Integer> ns, ss, es, ts;
+    private int repeats = 1;
+    private long seed = System.currentTimeMillis();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String output = "tournament.csv";
+    private boolean trusted = false;
+
+    public static void main(String[] args) throws Exception {
+        Tournament tournament = new Tournament();
+        tournament.parseArgs(args);
+        int games = tournament.run();
+        System.err.println("Played " + games + " games, results in " + tournament.output);
+        System.exit(0);
+    }
+
+    /**
+     * Plays the whole matrix on a work-stealing pool. Rows are written in matrix order
+     * as soon as the games before them are done.
+     * @return number of games played
+     */
+    public int run() throws IOException, InterruptedException {
+        List<GameConfig> configs = new ArrayList<>();
+        List<Integer> repeatIndex = new ArrayList<>();
+        for (String player : players)
+            for (String landmarkMapper : landmarkMappers)
+                for (String enemyMapper : enemyMappers)
+                    for (int n : ns)
+                        for (int s : ss)
+                            for (int e : es)
+                                for (int t : ts)
+                                    for (int r = 0; r < repeats; ++r) {
+                                        // same seeds in every cell, so cells are compared on the same boards
+                                        configs.add(new GameConfig(player, landmarkMapper, enemyMapper, n, s, e, t,
+                                                Simulator.repeatSeed(seed, r)).setTrusted(trusted));
+                                        repeatIndex.add(r);
+                                    }
+
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        List<Future<Row>> rows = new ArrayList<>();
+        for (GameConfig config : configs) {
+            rows.add(pool.submit(new Callable<Row>() {
+                public Row call() {
+                    long start = System.currentTimeMillis();
+                    try {
+                        GameResult result = new Simulator(config).play();
+                        return new Row(result, System.currentTimeMillis() - start, null);
+                    } catch (Exception ex) {
+                        return new Row(null, System.currentTimeMillis() - start, ex.toString());
+                    }
+                }
+            }));
+        }
+        pool.shutdown();
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(output))) {
+            out.println(HEADER);
+            for (int i = 0; i < rows.size(); ++i) {
+                Row row;
+                try {
+                    row = rows.get(i).get();
+                } catch (ExecutionException ex) {
+                    row = new Row(null, 0, ex.getCause().toString());
+                }
+                out.println(format(configs.get(i), repeatIndex.get(i), row));
+            }
+        }
+        return configs.size();
+    }
+
+    private static class Row {
+        final GameResult result;
+        final long millis;
+        final String error;
+
+        Row(GameResult result, long millis, String error) {
+            this.result = result;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    private static String format(GameConfig config, int repeat, Row row) {
+        StringBuilder line = new StringBuilder();
+        line.append(config.getPlayer()).append(',')
+            .append(config.getLandmarkMapper()).append(',')
+            .append(config.getEnemyMapper()).append(',')
+            .append(config.getBoardSize()).append(',')
+            .append(config.getScouts()).append(',')
+            .append(config.getEnemies()).append(',')
+            .append(config.getTurns()).append(',')
+            .append(repeat).append(',')
+            .append(config.getSeed()).append(',');
+        GameResult result = row.result;
+        if (result == null) {
+            line.append(",,,,,,,,,,,,,,,");
+        } else {
+            line.append(result.getScore()).append(',');
+            for (int o = 0; o < GameResult.OUTPOSTS; ++o)
+                line.append(result.getEnemiesDiscovered(o)).append(',');
+            for (int o = 0; o < GameResult.OUTPOSTS; ++o)
+                line.append(result.getSafeDiscovered(o)).append(',');
+            for (int o = 0; o < GameResult.OUTPOSTS; ++o)
+                line.append(result.getMistakes(o)).append(',');
+            line.append(result.getEnemiesMissed()).append(',');
+            line.append(result.getTurnsPlayed()).append(',');
+        }
+        line.append(row.millis).append(',');
+        if (row.error != null)
+            line.append('"').append(row.error.replace("\"", "\"\"")).append('"');
+        return line.toString();
+    }
+
+    private static List<String> parseNames(String arg) {
+        return Arrays.asList(arg.split(","));
+    }
+
+    /**
+     * Parses "20,40" or "20:100:20" (from:to:step, inclusive) or a mix of both.
+     */
+    private static List<Integer> parseRange(String arg) {
+        List<Integer> values = new ArrayList<>();
+        for (String part : arg.split(",")) {
+            String[] bounds = part.split(":");
+            if (bounds.length == 1) {
+                values.add(Integer.parseInt(bounds[0]));
+            } else if (bounds.length == 2 || bounds.length == 3) {
+                int from = Integer.parseInt(bounds[0]);
+                int to = Integer.parseInt(bounds[1]);
+                int step = bounds.length == 3 ? Integer.parseInt(bounds[2]) : 1;
+                if (step <= 0)
+                    throw new IllegalArgumentException("Invalid range step: " + part);
+                for (int v = from; v <= to; v += step)
+                    values.add(v);
+            } else {
+                throw new IllegalArgumentException("Invalid range: " + part);
+            }
+        }
+        return values;
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--trusted")) {
+                trusted = true;
+                continue;
+            }
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            if (args[i].equals("-p") || args[i].equals("--player")) {
+                players = parseNames(args[++i]);
+            } else if (args[i].equals("-m") || args[i].equals("--map")) {
+                landmarkMappers = parseNames(args[++i]);
+            } else if (args[i].equals("-em") || args[i].equals("--emap")) {
+                enemyMappers = parseNames(args[++i]);
+            } else if (args[i].equals("-n") || args[i].equals("--board")) {
+                ns = parseRange(args[++i]);
+            } else if (args[i].equals("-s") || args[i].equals("--scouts")) {
+                ss = parseRange(args[++i]);
+            } else if (args[i].equals("-e") || args[i].equals("--enemies")) {
+                es = parseRange(args[++i]);
+            } else if (args[i].equals("-t") || args[i].equals("--time")) {
+                ts = parseRange(args[++i]);
+            } else if (args[i].equals("-r") || args[i].equals("--repeats")) {
+                repeats = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-S") || args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+                if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+            } else if (args[i].equals("-o") || args[i].equals("--output")) {
+                output = args[++i];
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (players == null || landmarkMappers == null || enemyMappers == null
+                || ns == null || ss == null || es == null || ts == null)
+            throw new IllegalArgumentException("Missing arguments");
+    }
+}
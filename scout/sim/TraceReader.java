@@ -0,0 +1,254 @@
+package scout.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a trace written by TraceWriter. The file is memory-mapped and any turn can be reached
+ * from the closest keyframe before it, so seeking costs at most KEYFRAME_INTERVAL frames.
+ * Outpost reports are skipped, only the scouts are followed.
+ */
+class TraceReader implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final String player;
+    private final int n, s, t;
+    private final long seed;
+    private final List<Point> landmarks, enemies;
+    private final int[] keyframeTurns;
+    private final int[] keyframeOffsets;
+    private final int turnsPlayed;
+
+    // the board at the start of turn, before the moves finishing on it are applied
+    private int turn;
+    private int skipLeft;
+    private boolean ended;
+    private final int[] cells, arrivalTurn, nextCell;
+
+    TraceReader(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Trace is too large to map: " + file);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < 17 || buffer.getInt(0) != TraceWriter.MAGIC
+                || buffer.getInt(buffer.limit() - 4) != TraceWriter.MAGIC) {
+            channel.close();
+            throw new IOException("Not a complete trace: " + file);
+        }
+        if (buffer.get(4) != TraceWriter.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported trace version " + buffer.get(4) + ": " + file);
+        }
+        buffer.position(5);
+        byte[] name = new byte[(int) readVarint()];
+        buffer.get(name);
+        player = new String(name, StandardCharsets.UTF_8);
+        n = (int) readVarint();
+        s = (int) readVarint();
+        t = (int) readVarint();
+        long zigzag = readVarint();
+        seed = (zigzag >>> 1) ^ -(zigzag & 1);
+        landmarks = readPoints();
+        enemies = readPoints();
+
+        buffer.position((int) buffer.getLong(buffer.limit() - 12));
+        int count = (int) readVarint();
+        keyframeTurns = new int[count];
+        keyframeOffsets = new int[count];
+        int lastTurn = 0, lastOffset = 0;
+        for (int i = 0; i < count; ++i) {
+            keyframeTurns[i] = lastTurn += (int) readVarint();
+            keyframeOffsets[i] = lastOffset += (int) readVarint();
+        }
+
+        cells = new int[s];
+        arrivalTurn = new int[s];
+        nextCell = new int[s];
+        // the number of turns played is at the end of the frames, after the last keyframe
+        if (count > 0) {
+            jump(count - 1);
+            while (step());
+            turnsPlayed = turn;
+            jump(0);
+        } else {
+            turnsPlayed = 0;
+        }
+    }
+
+    public String getPlayer() {
+        return player;
+    }
+
+    public int getBoardSize() {
+        return n;
+    }
+
+    public int getScouts() {
+        return s;
+    }
+
+    public int getTurns() {
+        return t;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public List<Point> getLandmarkLocations() {
+        return landmarks;
+    }
+
+    public List<Point> getEnemyLocations() {
+        return enemies;
+    }
+
+    public int getTurnsPlayed() {
+        return turnsPlayed;
+    }
+
+    /**
+    * @return the turn shown by getScoutLocations()
+    */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+    * Moves to the given turn, clamped to the turns played.
+    */
+    public void seek(int target) {
+        if (turnsPlayed == 0) return;
+        target = Math.max(0, Math.min(target, turnsPlayed - 1));
+        int i = Arrays.binarySearch(keyframeTurns, target);
+        if (i < 0) i = -i - 2;
+        // going forward within reach of the next keyframe is cheaper than jumping to it
+        if (target < turn || (i >= 0 && keyframeTurns[i] > turn)) jump(i);
+        while (turn < target && step());
+    }
+
+    /**
+    * @return where every scout is during the current turn, once the moves finishing on it are done
+    */
+    public List<Point> getScoutLocations() {
+        List<Point> locations = new ArrayList<>(s);
+        for (int k = 0; k < s; ++k) {
+            int cell = arrivalTurn[k] == turn ? nextCell[k] : cells[k];
+            locations.add(new Point(cell / (n + 2), cell % (n + 2)));
+        }
+        return locations;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void jump(int keyframe) {
+        buffer.position(keyframeOffsets[keyframe]);
+        skipLeft = 0;
+        ended = false;
+        if (readVarint() != TraceWriter.KEYFRAME)
+            throw new IllegalStateException("Trace index does not point to a keyframe");
+        readKeyframe();
+    }
+
+    private void readKeyframe() {
+        turn = (int) readVarint();
+        for (int k = 0; k < s; ++k) {
+            cells[k] = (int) readVarint();
+            int wait = (int) readVarint();
+            if (wait == 0) {
+                arrivalTurn[k] = -1;
+            } else {
+                arrivalTurn[k] = turn + wait - 1;
+                nextCell[k] = cells[k] + offset((int) readVarint());
+            }
+        }
+    }
+
+    /**
+    * Plays the current turn.
+    * @return false if the game ended before it
+    */
+    private boolean step() {
+        if (skipLeft > 0) {
+            --skipLeft;
+            ++turn;
+            return true;
+        }
+        if (ended) return false;
+        for (;;) {
+            int tag = (int) readVarint();
+            if (tag == TraceWriter.KEYFRAME) {
+                readKeyframe();
+            } else if (tag == TraceWriter.TURN) {
+                readTurn();
+                ++turn;
+                return true;
+            } else if (tag == TraceWriter.SKIP) {
+                skipLeft = (int) readVarint() - 1;
+                ++turn;
+                return true;
+            } else if (tag == TraceWriter.END) {
+                ended = true;
+                return false;
+            } else {
+                throw new IllegalStateException("Unknown trace frame " + tag);
+            }
+        }
+    }
+
+    private void readTurn() {
+        for (int k = 0; k < s; ++k) {
+            if (arrivalTurn[k] == turn) {
+                cells[k] = nextCell[k];
+                arrivalTurn[k] = -1;
+            }
+        }
+        int k = 0;
+        for (long move = readVarint(); move != 0; move = readVarint()) {
+            --move;
+            k += (int) (move / 45);
+            int cost = TraceWriter.COSTS[(int) (move % 5)];
+            if (cost == 0) continue;
+            arrivalTurn[k] = turn + cost - 1;
+            nextCell[k] = cells[k] + offset((int) (move % 45 / 5));
+        }
+        // outpost reports
+        while (readVarint() != 0);
+    }
+
+    private int offset(int direction) {
+        return (direction / 3 - 1) * (n + 2) + (direction % 3 - 1);
+    }
+
+    private List<Point> readPoints() {
+        int count = (int) readVarint();
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            int cell = (int) readVarint();
+            points.add(new Point(cell / (n + 2), cell % (n + 2)));
+        }
+        return Collections.unmodifiableList(points);
+    }
+
+    private long readVarint() {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+}
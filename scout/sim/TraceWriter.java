@@ -0,0 +1,234 @@
+package scout.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import sun.misc.Unsafe;
+
+/**
+ * Records a game into a compact binary trace, written through a memory-mapped file.
+ * Numbers are unsigned LEB128 varints, signed ones zigzag encoded first.
+ *
+ * <pre>
+ * header   MAGIC (int), VERSION (byte), player name (length, UTF-8), n, s, t, seed,
+ *          landmark count and cells, enemy count and cells
+ * frames   KEYFRAME turn, then for every scout its cell and its wait counter
+ *                   (turns until its move finishes, plus one, 0 when it is not moving),
+ *                   followed by the direction of the move when it is moving
+ *          TURN     moves chosen this turn, each (scout gap * 45 + direction * 5 + cost) + 1,
+ *                   then 0, then outpost reports that changed a cell, each
+ *                   (zigzag(cell delta) * 16 + outpost * 4 + status) + 1, then 0
+ *          SKIP     number of turns in which nothing happened
+ *          END      turns played
+ * index    keyframe count, then (turn delta, file offset delta) for every keyframe
+ * footer   offset of the index (long), MAGIC (int)
+ * </pre>
+ *
+ * Cells are numbered x * (n + 2) + y, directions (dx + 1) * 3 + (dy + 1) and costs are
+ * 0 for an invalid move, then 1 to 4 for moves that take 2, 3, 6 or 9 turns. Only moves are
+ * stored between keyframes, positions follow from them: a move chosen on turn d that takes
+ * c turns lands on turn d + c - 1. A keyframe describes the board at the start of its turn
+ * and is written at least every KEYFRAME_INTERVAL turns.
+ */
+class TraceWriter implements Closeable {
+    static final int MAGIC = 0x53435452;
+    static final int VERSION = 1;
+    static final int KEYFRAME = 1, TURN = 2, SKIP = 3, END = 4;
+    static final int KEYFRAME_INTERVAL = 64;
+    static final int[] COSTS = {0, 2, 3, 6, 9};
+
+    // the file is mapped this many bytes at a time
+    private static final int CHUNK = 1 << 22;
+    // releases the mappings, null if it is not available
+    private static final Unsafe UNSAFE = unsafe();
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long base;
+    private Outpost[] outposts;
+    private int nextKeyframe;
+    private int lastScout;
+    private final List<long[]> index = new ArrayList<>();
+
+    TraceWriter(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK);
+    }
+
+    void header(String player, int n, int s, int t, long seed, Grid grid, List<Point> landmarks,
+            List<Point> enemies, List<CellObject> outposts) {
+        ensure(5);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        byte[] name = player.getBytes(StandardCharsets.UTF_8);
+        writeVarint(name.length);
+        ensure(name.length);
+        buffer.put(name);
+        writeVarint(n);
+        writeVarint(s);
+        writeVarint(t);
+        writeVarint(zigzag(seed));
+        writeVarint(landmarks.size());
+        for (Point p : landmarks) writeVarint(grid.cellIndex(p.x, p.y));
+        writeVarint(enemies.size());
+        for (Point p : enemies) writeVarint(grid.cellIndex(p.x, p.y));
+        this.outposts = new Outpost[outposts.size()];
+        for (int o = 0; o < this.outposts.length; ++o) {
+            this.outposts[o] = (Outpost) outposts.get(o);
+            this.outposts[o].keepJournal();
+        }
+    }
+
+    /**
+    * Starts a turn, preceded by a keyframe when one is due.
+    * @param arrivalTurn turn each scout's move finishes, -1 if it is not moving
+    * @param nextCell cell each moving scout is going to
+    */
+    void beginTurn(int turn, Grid grid, int[] scoutIndex, int[] arrivalTurn, int[] nextCell) {
+        if (turn >= nextKeyframe) {
+            index.add(new long[] {turn, position()});
+            writeVarint(KEYFRAME);
+            writeVarint(turn);
+            for (int k = 0; k < scoutIndex.length; ++k) {
+                int cell = grid.cellOf(scoutIndex[k]);
+                writeVarint(cell);
+                if (arrivalTurn[k] < 0) {
+                    writeVarint(0);
+                } else {
+                    writeVarint(arrivalTurn[k] - turn + 1);
+                    writeVarint(direction(grid.cellX(nextCell[k]) - grid.cellX(cell), grid.cellY(nextCell[k]) - grid.cellY(cell)));
+                }
+            }
+            nextKeyframe = (turn / KEYFRAME_INTERVAL + 1) * KEYFRAME_INTERVAL;
+        }
+        writeVarint(TURN);
+        lastScout = 0;
+    }
+
+    /**
+    * @param turns turns the move takes, 0 if it was invalid
+    */
+    void move(int scout, int dx, int dy, int turns) {
+        int cost = 0;
+        while (COSTS[cost] != turns) ++cost;
+        writeVarint((long) (scout - lastScout) * 45 + direction(dx, dy) * 5 + cost + 1);
+        lastScout = scout;
+    }
+
+    /**
+    * Ends the list of moves and records the outpost reports made during the turn.
+    */
+    void endTurn() {
+        writeVarint(0);
+        for (int o = 0; o < outposts.length; ++o) {
+            Outpost outpost = outposts[o];
+            int lastCell = 0;
+            for (int i = 0; i < outpost.journalSize(); ++i) {
+                int entry = outpost.journalEntry(i);
+                int cell = entry / 4;
+                writeVarint((zigzag(cell - lastCell) * 16 + o * 4 + entry % 4) + 1);
+                lastCell = cell;
+            }
+            outpost.clearJournal();
+        }
+        writeVarint(0);
+    }
+
+    void skip(int turns) {
+        writeVarint(SKIP);
+        writeVarint(turns);
+    }
+
+    /**
+    * Writes the end of the game and the keyframe index. A trace that is closed without
+    * it still holds every frame written so far, but cannot be searched.
+    */
+    void end(int turnsPlayed) {
+        writeVarint(END);
+        writeVarint(turnsPlayed);
+        long indexOffset = position();
+        writeVarint(index.size());
+        long lastTurn = 0, lastOffset = 0;
+        for (long[] entry : index) {
+            writeVarint(entry[0] - lastTurn);
+            writeVarint(entry[1] - lastOffset);
+            lastTurn = entry[0];
+            lastOffset = entry[1];
+        }
+        ensure(12);
+        buffer.putLong(indexOffset);
+        buffer.putInt(MAGIC);
+    }
+
+    /**
+    * Unmaps the file and truncates it to what was written. Some platforms cannot truncate a
+    * mapped file, so the mapping is released first instead of being left to the garbage collector.
+    */
+    public void close() throws IOException {
+        long size = position();
+        buffer.force();
+        unmap(buffer);
+        buffer = null;
+        channel.truncate(size);
+        channel.close();
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // without Unsafe the mapping is left to the garbage collector
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNSAFE != null) UNSAFE.invokeCleaner(buffer);
+    }
+
+    static int direction(int dx, int dy) {
+        return (dx + 1) * 3 + (dy + 1);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private long position() {
+        return base + buffer.position();
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        long next = base + buffer.position();
+        try {
+            // the old chunk is only released once the next one is mapped
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, next, Math.max(CHUNK, bytes));
+            unmap(buffer);
+            buffer = chunk;
+            base = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+}
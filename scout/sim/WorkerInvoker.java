@@ -0,0 +1,127 @@
+package scout.sim;
+
+import java.util.concurrent.*;
+
+/**
+ * Runs every call on a dedicated worker thread owned by one scout. A call that times out is
+ * abandoned together with its worker, which may still be running it, and later calls are
+ * refused until it has finished, so that the player object is never used by two threads.
+ * The next call after that gets a fresh worker.
+ */
+class WorkerInvoker implements Invoker {
+
+	private final String name;
+	private ExecutorService worker;
+	// worker left running a call that timed out, null once it has finished
+	private ExecutorService abandoned = null;
+	private int workers = 0;
+	private long calls = 0;
+	private long handoffNanos = 0;
+	private long maxHandoffNanos = 0;
+	private long overruns = 0;
+	private long forfeits = 0;
+
+	WorkerInvoker(String name)
+	{
+		this.name = name;
+		worker = newWorker();
+	}
+
+	private ExecutorService newWorker()
+	{
+		final String threadName = name + "-" + (workers++);
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, threadName);
+				// abandoned workers must not keep the JVM alive
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public <T> T call(final Callable <T> task, long timeout) throws Exception
+	{
+		if (worker == null)
+			throw new IllegalStateException();
+		if (task == null || timeout < 0)
+			throw new IllegalArgumentException();
+		if (isBusy()) {
+			++forfeits;
+			throw new RejectedExecutionException(name + " is still running a call that timed out");
+		}
+		final long submitted = System.nanoTime();
+		// written by the worker before the task runs, read after get() returns
+		final long[] started = new long[1];
+		Future <T> future = worker.submit(new Callable <T>() {
+			public T call() throws Exception {
+				started[0] = System.nanoTime();
+				return task.call();
+			}
+		});
+		try {
+			T result = future.get(timeout, TimeUnit.MILLISECONDS);
+			record(started[0] - submitted);
+			return result;
+		} catch (TimeoutException e) {
+			++overruns;
+			// only interrupts the call, a player ignoring interrupts keeps running until it returns
+			future.cancel(true);
+			worker.shutdownNow();
+			abandoned = worker;
+			worker = newWorker();
+			throw e;
+		} catch (ExecutionException e) {
+			record(started[0] - submitted);
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			throw e;
+		}
+	}
+
+	public boolean isBusy()
+	{
+		// the abandoned worker terminates once the call it was left running returns
+		if (abandoned != null && abandoned.isTerminated()) abandoned = null;
+		return abandoned != null;
+	}
+
+	private void record(long handoff)
+	{
+		++calls;
+		handoffNanos += handoff;
+		if (handoff > maxHandoffNanos) maxHandoffNanos = handoff;
+	}
+
+	public long getCalls()
+	{
+		return calls;
+	}
+
+	public long getHandoffNanos()
+	{
+		return handoffNanos;
+	}
+
+	public long getMaxHandoffNanos()
+	{
+		return maxHandoffNanos;
+	}
+
+	public long getOverruns()
+	{
+		return overruns;
+	}
+
+	public long getForfeits()
+	{
+		return forfeits;
+	}
+
+	public void close()
+	{
+		if (worker == null) return;
+		worker.shutdownNow();
+		worker = null;
+	}
+}
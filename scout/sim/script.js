@@ -1,38 +1,41 @@
-function undraw()
+// The board is drawn on two canvases stacked on each other. "background" has what never
+// changes during a game: the grid, outposts, landmarks and enemies, and is only drawn again
+// when the board does. "canvas" has the scouts and the side panel and is cleared every frame.
+var board_area = {min_x: 300, min_y: 50, max_x: 900, max_y: 650};
+// cells smaller than this many pixels get no grid lines, and scouts are shown as density tiles
+var min_cell = 4;
+// scouts are only labelled with their IDs up to this many
+var max_labels = 100;
+
+function context(id)
+{
+	return document.getElementById(id).getContext("2d");
+}
+
+function undraw(ctx)
 {
-	var canvas = document.getElementById("canvas");
-	var ctx = canvas.getContext("2d");
-	ctx.clearRect(0, 0, canvas.width, canvas.height);
+	ctx.clearRect(0, 0, ctx.canvas.width, ctx.canvas.height);
 }
 
-function draw_grid(min_x, min_y, max_x, max_y, rows, cols)
+function draw_grid(ctx, min_x, min_y, max_x, max_y, rows, cols)
 {
-	var canvas = document.getElementById("canvas");
-	var ctx = canvas.getContext("2d");
-	if (min_x < 0 || max_x > canvas.width)
+	if (min_x < 0 || max_x > ctx.canvas.width)
 		throw "Invalid x-axis bounds: " + min_x + " - " + max_x;
-	if (min_y < 0 || max_y > canvas.height)
+	if (min_y < 0 || max_y > ctx.canvas.height)
 		throw "Invalid y-axis bounds: " + min_y + " - " + max_y;
-    // draw vertical lines
+    // all the lines go into one path, stroked once
+    ctx.beginPath();
     for (var col = 0 ; col <= cols ; ++col) {
-        ctx.beginPath();
         ctx.moveTo(min_x + col * (max_x - min_x) / cols, min_y);
         ctx.lineTo(min_x + col * (max_x - min_x) / cols, max_y);
-        ctx.closePath();
-        ctx.lineWidth = 2;
-        ctx.strokeStyle = "grey";
-        ctx.stroke();
     }
-    // draw horizontal lines
     for (var row = 0 ; row <= rows ; ++row) {
-        ctx.beginPath();
         ctx.moveTo(min_x, min_y + row * (max_y - min_y) / rows);
         ctx.lineTo(max_x, min_y + row * (max_y - min_y) / rows);
-        ctx.closePath();
-        ctx.lineWidth = 2;
-        ctx.strokeStyle = "grey";
-        ctx.stroke();
     }
+    ctx.lineWidth = 2;
+    ctx.strokeStyle = "grey";
+    ctx.stroke();
 }
 
 function rand(n) {
@@ -43,118 +46,125 @@ Number.prototype.hashCode = function(){
     return (this*2654435761) % 4294967296;
 }
 
-function draw_dots(min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, color, IDs, isenemy) {
-    var ctx = document.getElementById('canvas').getContext('2d');
+function draw_dots(ctx, min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, color, IDs, isenemy) {
+    var radius = 4;
+    if(rows > 25) radius = 3;
+    if(rows > 50) radius = 2;
+    var locationsx = new Array(num);
+    var locationsy = new Array(num);
+    // all the dots go into one path, filled once
+    ctx.beginPath();
     for(var i = 0 ; i < num ; ++ i) {
-        ctx.beginPath();
-        //ctx.moveTo(min_x + xcoords[i] * (max_x - min_x) / cols,
-        //    min_y + ycoords[i] * (max_y - min_y) / rows );
         var locationx = min_x + xcoords[i] * (max_x - min_x) / cols + (max_x - min_x) / (4*cols);
         var locationy = min_y + ycoords[i] * (max_y - min_y) / rows+ (max_y - min_y) / (4*rows);
         if(!isenemy) {
             locationx +=  IDs[i].hashCode()%((max_x - min_x) / (2*cols));
             locationy +=  IDs[i].hashCode()%((max_y - min_y) / (2*rows))
         }
-        var radius = 4;
-        if(rows > 25) radius = 3;
-        if(rows > 50) radius = 2;
-        ctx.arc(
-            locationx, 
-            locationy, 
-            radius, 0, 2 * Math.PI);
-        ctx.fillStyle = color;
-        ctx.fill();
-        if(IDs != null) {
-            ctx.font = "14px Arial";
-            ctx.textAlign = "left";
-            ctx.lineWidth = 1;
-            ctx.strokeStyle = "black";
-            ctx.strokeText(IDs[i],        locationx + 1, locationy - 1);
+        ctx.moveTo(locationx + radius, locationy);
+        ctx.arc(locationx, locationy, radius, 0, 2 * Math.PI);
+        locationsx[i] = locationx;
+        locationsy[i] = locationy;
+    }
+    ctx.fillStyle = color;
+    ctx.fill();
+    if(IDs != null && num <= max_labels) {
+        ctx.font = "14px Arial";
+        ctx.textAlign = "left";
+        ctx.lineWidth = 1;
+        ctx.strokeStyle = "black";
+        for(var i = 0 ; i < num ; ++ i) {
+            ctx.strokeText(IDs[i], locationsx[i] + 1, locationsy[i] - 1);
         }
     }
 }
 
-function draw_landmarks(min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, color) {
-    var ctx = document.getElementById('canvas').getContext('2d');
+// fills whole cells, for boards where a dot would not fit in one
+function draw_cells(ctx, min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, color) {
+    var width = (max_x - min_x) / cols;
+    var height = (max_y - min_y) / rows;
+    ctx.beginPath();
+    for(var i = 0 ; i < num ; ++ i) {
+        ctx.rect(min_x + width*xcoords[i], min_y + height*ycoords[i], Math.max(width, 1), Math.max(height, 1));
+    }
+    ctx.fillStyle = color;
+    ctx.fill();
+}
+
+// offscreen canvas with one pixel per density tile, reused between frames
+var tiles = null;
+
+// counts the dots in tiles of cells at least min_cell pixels wide and shades every tile by
+// its count, darkest for the fullest one, so that the cost does not depend on the number of dots
+function draw_density(ctx, min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, rgb) {
+    var width = (max_x - min_x) / cols;
+    var height = (max_y - min_y) / rows;
+    var size = Math.ceil(min_cell / Math.min(width, height));
+    var tiles_x = Math.ceil(cols / size);
+    var tiles_y = Math.ceil(rows / size);
+    var counts = new Uint32Array(tiles_x * tiles_y);
+    var max = 0;
+    for(var i = 0 ; i < num ; ++ i) {
+        var t = Math.floor(ycoords[i] / size) * tiles_x + Math.floor(xcoords[i] / size);
+        if (++counts[t] > max) max = counts[t];
+    }
+    if (tiles == null || tiles.width != tiles_x || tiles.height != tiles_y) {
+        tiles = document.createElement("canvas");
+        tiles.width = tiles_x;
+        tiles.height = tiles_y;
+    }
+    var tiles_ctx = tiles.getContext("2d");
+    var image = tiles_ctx.createImageData(tiles_x, tiles_y);
+    for(var t = 0 ; t < counts.length ; ++ t) {
+        if (counts[t] == 0) continue;
+        image.data[4*t]     = rgb[0];
+        image.data[4*t + 1] = rgb[1];
+        image.data[4*t + 2] = rgb[2];
+        image.data[4*t + 3] = 64 + Math.round(191 * Math.sqrt(counts[t] / max));
+    }
+    tiles_ctx.putImageData(image, 0, 0);
+    ctx.imageSmoothingEnabled = false;
+    ctx.drawImage(tiles, 0, 0, tiles_x, tiles_y,
+                  min_x, min_y, tiles_x * size * width, tiles_y * size * height);
+}
+
+function draw_landmarks(ctx, min_x, min_y, max_x, max_y, rows, cols, num, xcoords, ycoords, color) {
     var width = (max_x - min_x) / (cols);
     var height = (max_y - min_y) / rows;
+    // all the triangles go into one path
+    ctx.beginPath();
     for(var i = 0 ; i < num ; ++ i) {
         var offset_x = min_x + width*xcoords[i];
         var offset_y = min_y + height*ycoords[i];
-        ctx.beginPath();
         ctx.moveTo(offset_x + width/2, offset_y + height/4);
         ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
         ctx.lineTo(offset_x + 3*width/4, offset_y + 3* height/4);
         ctx.closePath();
-        ctx.lineWidth = 4;
-        ctx.strokeStyle = "black";
-        ctx.stroke();
-        ctx.fillStyle=color;
-        ctx.fill();
     }
-}
-
-function draw_outpost(min_x, min_y, max_x, max_y, rows, cols) {
-    var ctx = document.getElementById('canvas').getContext('2d');
-    var width = (max_x - min_x) / (cols);
-    var height = (max_y - min_y) / rows;
-    ctx.beginPath();
-    offset_x = min_x;
-    offset_y = min_y;
-    ctx.moveTo(offset_x + width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + width/2, offset_y);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + 3*height/4);
-    ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
-    ctx.closePath();
-    ctx.lineWidth = 4;
-    ctx.strokeStyle = "black";
-    ctx.stroke();
-    ctx.fillStyle="yellow";
-    ctx.fill();
-
-
-    ctx.beginPath();
-    offset_x = max_x - width;
-    offset_y = min_y;
-    ctx.moveTo(offset_x + width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + width/2, offset_y);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + 3*height/4);
-    ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
-    ctx.closePath();
     ctx.lineWidth = 4;
     ctx.strokeStyle = "black";
     ctx.stroke();
-    ctx.fillStyle="yellow";
+    ctx.fillStyle=color;
     ctx.fill();
+}
 
-
-    ctx.beginPath();
-    offset_x = min_x;
-    offset_y = max_y - height;
-    ctx.moveTo(offset_x + width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + width/2, offset_y);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + 3*height/4);
-    ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
-    ctx.closePath();
-    ctx.lineWidth = 4;
-    ctx.strokeStyle = "black";
-    ctx.stroke();
-    ctx.fillStyle="yellow";
-    ctx.fill();
-
-
+function draw_outpost(ctx, min_x, min_y, max_x, max_y, rows, cols) {
+    var width = (max_x - min_x) / (cols);
+    var height = (max_y - min_y) / rows;
+    // one in every corner
+    var corners_x = [min_x, max_x - width, min_x, max_x - width];
+    var corners_y = [min_y, min_y, max_y - height, max_y - height];
     ctx.beginPath();
-    offset_x = max_x - width;
-    offset_y = max_y - height;
-    ctx.moveTo(offset_x + width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + width/2, offset_y);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + height/4);
-    ctx.lineTo(offset_x + 3*width/4, offset_y + 3*height/4);
-    ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
-    ctx.closePath();
+    for(var i = 0 ; i < 4 ; ++ i) {
+        var offset_x = corners_x[i];
+        var offset_y = corners_y[i];
+        ctx.moveTo(offset_x + width/4, offset_y + height/4);
+        ctx.lineTo(offset_x + width/2, offset_y);
+        ctx.lineTo(offset_x + 3*width/4, offset_y + height/4);
+        ctx.lineTo(offset_x + 3*width/4, offset_y + 3*height/4);
+        ctx.lineTo(offset_x + width/4, offset_y + 3*height/4);
+        ctx.closePath();
+    }
     ctx.lineWidth = 4;
     ctx.strokeStyle = "black";
     ctx.stroke();
@@ -162,13 +172,11 @@ function draw_outpost(min_x, min_y, max_x, max_y, rows, cols) {
     ctx.fill();
 }
 
-function draw_side(min_x, min_y, max_x, max_y, group, turns, colors, score)
+function draw_side(ctx, min_x, min_y, max_x, max_y, group, turns, colors, score)
 {
-	var canvas = document.getElementById("canvas");
-	var ctx = canvas.getContext("2d");
-	if (min_x < 0 || max_x > canvas.width)
+	if (min_x < 0 || max_x > ctx.canvas.width)
 		throw "Invalid x-axis bounds: " + min_x + " - " + max_x;
-	if (min_y < 0 || max_y > canvas.height)
+	if (min_y < 0 || max_y > ctx.canvas.height)
 		throw "Invalid y-axis bounds: " + min_y + " - " + max_y;
     // draw message
     ctx.font = "32px Arial";
@@ -186,7 +194,116 @@ function draw_side(min_x, min_y, max_x, max_y, group, turns, colors, score)
     ctx.fillText("Score: " + score,         min_x, min_y + 90);
 }
 
+function draw_background(n, enemies, landmarks)
+{
+    var ctx = context("background");
+    var b = board_area;
+    var cells = n + 2;
+    undraw(ctx);
+    if ((b.max_x - b.min_x) / cells < min_cell) {
+        // only the border, the lines would fill the board
+        draw_grid(ctx, b.min_x, b.min_y, b.max_x, b.max_y, 1, 1);
+        draw_cells(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, landmarks.num, landmarks.x, landmarks.y, "limegreen");
+        draw_cells(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, enemies.num, enemies.x, enemies.y, "red");
+    } else {
+        draw_grid(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells);
+        draw_landmarks(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, landmarks.num, landmarks.x, landmarks.y, "limegreen");
+        draw_dots(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, enemies.num, enemies.x, enemies.y, "red", null, true);
+    }
+    draw_outpost(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells);
+}
+
+// parts of the frame that never change, from static.txt
+var board = null;
 
+function parse_points(data, at)
+{
+    var num = Number(data[at]);
+    var xs = new Array(num);
+    var ys = new Array(num);
+    for(var i = 0; i < num ; ++i) {
+        xs[i] = Number(data[at + 1 + 2 * i]);
+        ys[i] = Number(data[at + 2 + 2 * i]);
+    }
+    return {num: num, x: xs, y: ys, end: at + 1 + 2 * num};
+}
+
+function process_static(data)
+{
+    data = data.split(",");
+    var enemies = parse_points(data, 2);
+    var landmarks = parse_points(data, enemies.end);
+    board = {group: data[0], n: Number(data[1]), enemies: enemies, landmarks: landmarks};
+}
+
+// frame.txt: turns left, refresh, scouts, scout IDs, score
+function process_frame(data)
+{
+    data = data.split(",");
+    var scouts = parse_points(data, 2);
+    var scoutIDs = new Array(scouts.num);
+    for(var i = 0 ; i < scouts.num ; ++ i) {
+        scoutIDs[i] = Number(data[scouts.end + i]);
+    }
+    var score = Number(data[scouts.end + scouts.num]);
+    return draw(board.group, board.n, Number(data[0]), Number(data[1]), scouts, board.enemies,
+                board.landmarks, scoutIDs, score);
+}
+
+// scouts as of the last frame received from delta.txt
+var frame_seq = -1;
+var scouts = null;
+var scoutIDs = null;
+
+// delta.txt: a keyframe (K) replaces the scouts, a delta (D) moves the ones that changed
+// since the frame it is based on
+function process_delta(data)
+{
+    data = data.split(",");
+    var seq = Number(data[1]);
+    if (data[0] == "D") {
+        var base = Number(data[2]);
+        // frames between the one we have and the base were missed, start again from a keyframe
+        if (scouts == null || base > frame_seq) return resync(Number(data[4]));
+        data.splice(2, 1);
+    }
+    var turns_left = Number(data[2]);
+    var refresh = Number(data[3]);
+    var score = Number(data[4]);
+    if (data[0] == "K") {
+        scouts = parse_points(data, 5);
+        scoutIDs = new Array(scouts.num);
+        for(var i = 0 ; i < scouts.num ; ++ i) {
+            scoutIDs[i] = Number(data[scouts.end + i]);
+        }
+    } else if (data[0] == "D") {
+        var moved = Number(data[5]);
+        for(var i = 0 ; i < moved ; ++ i) {
+            var k = Number(data[6 + 3 * i]);
+            scouts.x[k] = Number(data[7 + 3 * i]);
+            scouts.y[k] = Number(data[8 + 3 * i]);
+        }
+    } else throw "Invalid frame: " + data[0];
+    frame_seq = seq;
+    return draw(board.group, board.n, turns_left, refresh, scouts, board.enemies,
+                board.landmarks, scoutIDs, score);
+}
+
+// drops the scouts so that the next frame is a keyframe, polling asks with since=-1
+// and a stream is reopened
+function resync(refresh)
+{
+    frame_seq = -1;
+    scouts = null;
+    if (source != null) {
+        source.close();
+        stream();
+    }
+    // polling asks for the keyframe even after the last frame
+    return refresh < 0 ? 0 : Math.round(refresh);
+}
+
+// data.txt: the whole frame
 function process(data)
 {
     // parse data
@@ -195,52 +312,42 @@ function process(data)
     var n = Number(data[1]);
     var turns_left = Number(data[2]);
     var refresh = Number(data[3]);
-    var s = Number(data[4]);
-    var scoutx = new Array(s);
-    var scouty = new Array(s);
-    for(var i = 0; i < s ; ++i) {
-        scoutx[i] = Number(data[5 + 2 * i]);
-        scouty[i] = Number(data[6 + 2 * i]);
-    }
-    var e = Number(data[5 + 2*s]);
-    var enemyx = new Array(e);
-    var enemyy = new Array(e);
-    for(var i = 0; i < e ; ++i) {
-        enemyx[i] = Number(data[6 + 2*s + 2 * i]);
-        enemyy[i] = Number(data[7 + 2*s + 2 * i]);
-    }
-
-    var landmarkCount = Number(data[6 + 2*s + 2*e]);
-    var landmarkx = new Array(landmarkCount);
-    var landmarky = new Array(landmarkCount);
-    for(var i = 0; i < landmarkCount ; ++i) {
-        landmarkx[i] = Number(data[7 + 2*s + 2*e  +2 * i]);
-        landmarky[i] = Number(data[8 + 2*s + 2*e  +2 * i]);
+    var scouts = parse_points(data, 4);
+    var enemies = parse_points(data, scouts.end);
+    var landmarks = parse_points(data, enemies.end);
+    var scoutIDs = new Array(scouts.num);
+    for(var i = 0 ; i < scouts.num ; ++ i) {
+        scoutIDs[i] = Number(data[landmarks.end + i]);
     }
+    var score = Number(data[landmarks.end + scouts.num]);
+    return draw(group, n, turns_left, refresh, scouts, enemies, landmarks, scoutIDs, score);
+}
 
-    var scoutIDs = new Array(s);
+// what the background was drawn for, see draw_background
+var background_key = null;
 
-    for(var i = 0 ; i < s ; ++ i) {
-        scoutIDs[i] = Number(data[7 + 2*s + 2*e + 2*landmarkCount + i]);
-    }
-    var score = Number(data[7 + 2*s + 2*e + 2*landmarkCount + s]);
-    console.log("data", data);
+function draw(group, n, turns_left, refresh, scouts, enemies, landmarks, scoutIDs, score)
+{
     if (refresh < 0.0) refresh = -1;
     else refresh = Math.round(refresh);
 
-    // draw grid
-    undraw();
-    draw_grid(300, 50, 900, 650, n+2, n+2, "black");
+    // data.txt sends the whole board with every frame, but enemies and landmarks never move
+    var key = group + "," + n + "," + enemies.num + "," + landmarks.num;
+    if (key != background_key) {
+        draw_background(n, enemies, landmarks);
+        background_key = key;
+    }
+    var ctx = context("canvas");
+    var b = board_area;
+    var cells = n + 2;
+    undraw(ctx);
     // draw for 1st player
     var colors = ["orange", "black", "purple", "green", "blue"];
-    draw_outpost(300, 50, 900, 650, n+2, n+2);
-    console.log("count: " + landmarkCount);
-    draw_landmarks(300, 50, 900, 650, n+2, n+2, landmarkCount, landmarkx, landmarky, "limegreen")
-    draw_dots(300, 50, 900, 650, n+2, n+2, e, enemyx, enemyy, "red", null, true);
-    draw_dots(300, 50, 900, 650, n+2, n+2, s, scoutx, scouty, "blue", scoutIDs, false);
-    draw_side ( 10,  40,  190, 690, group, turns_left, colors, score);
-    //draw_outpost(250, 50, 850, 650 , n+2, n+2);
-    //draw_shape(250,  50,  850, 650, 50, 50, buildings, cuts, colors, types, highlight == 0);
+    if ((b.max_x - b.min_x) / cells < min_cell)
+        draw_density(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, scouts.num, scouts.x, scouts.y, [0, 0, 255]);
+    else
+        draw_dots(ctx, b.min_x, b.min_y, b.max_x, b.max_y, cells, cells, scouts.num, scouts.x, scouts.y, "blue", scoutIDs, false);
+    draw_side (ctx, 10,  40,  190, 690, group, turns_left, colors, score);
     return refresh;
 }
 
@@ -256,7 +363,7 @@ function ajax(version, retries, timeout)
 				throw "Incomplete HTTP request: " + xhr.readyState;
 			if (xhr.status != 200)
 				throw "Invalid HTTP status: " + xhr.status;
-			refresh = process(xhr.responseText);
+			refresh = process_delta(xhr.responseText);
 			if (latest_version < version && paused == 0)
 				latest_version = version;
 			else
@@ -277,15 +384,85 @@ function ajax(version, retries, timeout)
 			ajax(version, retries - 1, timeout * 2);
 		}
 	});
-	xhr.open("GET", "data.txt", true);
+	xhr.open("GET", "delta.txt?since=" + frame_seq + "&" + query(), true);
 	xhr.responseType = "text";
 	xhr.timeout = timeout;
 	xhr.send();
 }
 
+// frames pushed by the server as Server-Sent Events, null while polling
+var source = null;
+
+// streams stream.txt, falling back to polling delta.txt if the server does not stream
+function stream()
+{
+	var received = false;
+	source = new EventSource("stream.txt");
+	source.onmessage = (function(event) {
+		received = true;
+		try {
+			process_delta(event.data);
+		} catch (message) { alert(message); }
+	});
+	source.onerror = (function() {
+		// the browser reconnects by itself once the stream worked, the next event is a keyframe
+		if (received) return;
+		source.close();
+		source = null;
+		ajax(0, 10, 100);
+	});
+}
+
 function pause() {
     paused = (paused + 1) % 2;
+    // a stream is closed while paused and reopened with a keyframe
+    if (source != null && paused == 1) source.close();
+    else if (source != null) stream();
+}
+
+// replay controls, a live game ignores them
+var speed = 1;
+var seek_turn = -1;
+
+function query()
+{
+	var q = "speed=" + speed;
+	if (seek_turn >= 0) q += "&turn=" + seek_turn;
+	seek_turn = -1;
+	return q;
+}
+
+function seek() {
+    var turn = Number(document.getElementById("turn").value);
+    if (turn >= 0) seek_turn = Math.floor(turn);
+}
+
+function fast_forward() {
+    if (speed < 1024) speed *= 4;
+}
+
+function normal_speed() {
+    speed = 1;
+}
+
+// the static part is loaded once, then frames are streamed or polled
+function load_static()
+{
+	var xhr = new XMLHttpRequest();
+	xhr.onload = (function() {
+		try {
+			if (xhr.status != 200)
+				throw "Invalid HTTP status: " + xhr.status;
+			process_static(xhr.responseText);
+		} catch (message) { alert(message); return; }
+		if (typeof EventSource != "undefined") stream();
+		else ajax(0, 10, 100);
+	});
+	xhr.onerror = (function() { location.reload(true); });
+	xhr.open("GET", "static.txt", true);
+	xhr.responseType = "text";
+	xhr.send();
 }
 
 var paused = 0;
-ajax(0, 10, 100);
+load_static();